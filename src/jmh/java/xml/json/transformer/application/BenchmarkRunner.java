@@ -0,0 +1,26 @@
+package xml.json.transformer.application;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada de {@code target/benchmarks.jar}. Acepta las mismas opciones que {@code org.openjdk.jmh.Main}
+ * (p. ej. {@code -p size=HUGE}, un regex de benchmarks) y agrega siempre el profiler GC, de modo que cada
+ * resultado trae throughput y {@code gc.alloc.rate.norm} (bytes asignados por operación).
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        if (cli.getProfilers().stream().noneMatch(p -> p.getKlass().equals(GCProfiler.class.getName()))) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,59 @@
+package xml.json.transformer.application;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Warmup; // no la clase Warmup de este paquete
+import xml.json.transformer.domain.InvoiceData;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Escritura del JSON RIPS: {@code writeJson} (pretty/compacto) frente al escritor en streaming. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonOutputBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    public SyntheticAttachedDocument.Size size;
+
+    @Param({"true", "false"})
+    public boolean pretty;
+
+    private InvoiceData data;
+    private XmlAdapterService service;
+    private Path out;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+
+        data = SyntheticAttachedDocument.invoiceData(size);
+        service = new XmlAdapterService(TransformEngine.DOM, false, pretty);
+        out = Files.createTempFile("xmlt-bench-" + size, ".json");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.setOut(stdout);
+        Files.deleteIfExists(out);
+    }
+
+    @Benchmark
+    public void writeJson() throws Exception {
+        service.writeJson(data, out.toString());
+    }
+
+    @Benchmark
+    public void writeJsonStreaming() throws Exception {
+        JsonWriters.writeInvoice(data, data.usuarios.iterator(), out, pretty);
+    }
+}
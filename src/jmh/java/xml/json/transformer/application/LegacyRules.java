@@ -0,0 +1,103 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A–H como estaban antes de {@link RuleSet}: una pasada XPath por regla. Sólo es la línea base de
+ * {@link XmlPipelineBenchmark} ({@code rule*} y {@code rulesLegacy}); el flujo usa {@link RuleSet}.
+ */
+final class LegacyRules {
+
+    private LegacyRules() {}
+
+    /** A–H en el orden original, cada regla recorriendo el documento completo. */
+    static void apply(Document doc) throws Exception {
+        replaceGroupSchemeName(doc);
+        removeUnnamespacedElements(doc, "Id");
+        renameCodigoPrestador(doc);
+        removeUnnamespacedElements(doc, "TotalesCop");
+        replaceCustomizationId(doc);
+        adjustValueElements(doc);
+        truncateCodigoPrestador(doc);
+        removeByQualifiedName(doc, "cac:PrepaidPayment");
+    }
+
+    static void replaceGroupSchemeName(Document doc) throws Exception {
+        NodeList nodes = XPathRegistry.nodes(doc, "//*[local-name()='Group']");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element group = (Element) nodes.item(i);
+            if (!group.hasAttribute("schemeName"))
+                group.setAttribute("schemeName", "Sector Salud");
+        }
+    }
+
+    static void removeUnnamespacedElements(Document doc, String localName) throws Exception {
+        NodeList nodes = XPathRegistry.nodes(doc, "//*[local-name()='" + localName + "']");
+        List<Node> toRemove = new ArrayList<>();
+        for (int i = 0; i < nodes.getLength(); i++) toRemove.add(nodes.item(i));
+        for (Node n : toRemove) n.getParentNode().removeChild(n);
+    }
+
+    static void renameCodigoPrestador(Document doc) throws Exception {
+        NodeList names = XPathRegistry.nodes(doc, "//*[local-name()='Interoperabilidad']//*[local-name()='Name']");
+        for (int i = 0; i < names.getLength(); i++) {
+            Node n = names.item(i);
+            String original = n.getTextContent().trim();
+            n.setTextContent(original.replaceAll("\\s+", "_").toUpperCase());
+        }
+    }
+
+    static void replaceCustomizationId(Document doc) throws Exception {
+        NodeList ids = XPathRegistry.nodes(doc, "//cbc:CustomizationID");
+        for (int i = 0; i < ids.getLength(); i++) {
+            Node n = ids.item(i);
+            if ("10".equals(n.getTextContent().trim()))
+                n.setTextContent("SS-SinAporte");
+        }
+    }
+
+    static void adjustValueElements(Document doc) throws Exception {
+        NodeList values = XPathRegistry.nodes(doc, "//*[local-name()='Value']");
+        for (int i = 0; i < values.getLength(); i++) {
+            Element v = (Element) values.item(i);
+            String text = v.getTextContent().trim();
+            if (text.equalsIgnoreCase("Cobertura Póliza SOAT")) {
+                v.setAttribute("schemeID", "10");
+                v.setAttribute("schemeName", "salud_cobertuta.gc");
+            } else if (text.equalsIgnoreCase("Pago por evento")) {
+                v.setAttribute("schemeID", "04");
+                v.setAttribute("schemeName", "salud_modalidad_pago.gc");
+            }
+        }
+    }
+
+    static void truncateCodigoPrestador(Document doc) throws Exception {
+        NodeList values = XPathRegistry.nodes(doc, "//*[local-name()='Value']");
+        for (int i = 0; i < values.getLength(); i++) {
+            Element v = (Element) values.item(i);
+            if (v.getTextContent().matches("\\d{12,}")) {
+                String digits = v.getTextContent().substring(0, 10);
+                v.setTextContent(digits);
+            }
+        }
+    }
+
+    static void removeByQualifiedName(Document doc, String qName) throws Exception {
+        String[] parts = qName.split(":");
+        if (parts.length != 2) return;
+        String ns = XPathRegistry.NS.get(parts[0]);
+        String local = parts[1];
+        NodeList nodes = doc.getElementsByTagNameNS(ns, local);
+        List<Node> toRemove = new ArrayList<>();
+        for (int i = 0; i < nodes.getLength(); i++)
+            toRemove.add(nodes.item(i));
+        for (Node n : toRemove)
+            n.getParentNode().removeChild(n);
+    }
+}
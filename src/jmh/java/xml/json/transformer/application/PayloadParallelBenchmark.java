@@ -0,0 +1,67 @@
+package xml.json.transformer.application;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Warmup; // no la clase Warmup de este paquete
+import org.w3c.dom.Document;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code applyManualTransformations} sobre un AttachedDocument con varios Invoice embebidos, en secuencia
+ * ({@code -Dxmlt.parallel.threads=1}) y en paralelo (un hilo por núcleo) según el fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PayloadParallelBenchmark {
+
+    private static final String FECHA = "2025-03-10 15:30";
+
+    @Param({"MEDIUM"})
+    public SyntheticAttachedDocument.Size size;
+
+    @Param({"1", "8", "32"})
+    public int payloads;
+
+    private Path file;
+    private ParsedInvoice invoice;
+    private XmlAdapterService service;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+
+        service = new XmlAdapterService(TransformEngine.DOM, false, true);
+        file = Files.createTempFile("xmlt-bench-payloads-" + payloads, ".xml");
+        Files.writeString(file, SyntheticAttachedDocument.outer(size, payloads), StandardCharsets.UTF_8);
+        invoice = ParsedInvoice.read(service, file);
+        invoice.embedded();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.setOut(stdout);
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dxmlt.parallel.threads=1"})
+    public Document sequential() throws Exception {
+        return service.applyManualTransformations(invoice, FECHA);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+    public Document parallel() throws Exception {
+        return service.applyManualTransformations(invoice, FECHA);
+    }
+}
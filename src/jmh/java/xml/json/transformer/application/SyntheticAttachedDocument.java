@@ -0,0 +1,160 @@
+package xml.json.transformer.application;
+
+import xml.json.transformer.domain.InvoiceData;
+import xml.json.transformer.domain.UserData;
+
+/**
+ * Genera AttachedDocument UBL sintéticos con la forma de los reales: un Invoice embebido en CDATA con
+ * todo lo que tocan las reglas A–H (Interoperabilidad, TotalesCop, CustomizationID 10, PrepaidPayment...)
+ * más un ApplicationResponse. El tamaño lo define el número de {@code cac:InvoiceLine}.
+ */
+public final class SyntheticAttachedDocument {
+
+    /** Tamaños usados en los benchmarks (público: lo usa el código que genera JMH en {@code jmh_generated}). */
+    public enum Size {
+        SMALL(1), MEDIUM(200), HUGE(5_000);
+
+        final int lines;
+
+        Size(int lines) {
+            this.lines = lines;
+        }
+    }
+
+    private SyntheticAttachedDocument() {}
+
+    static String outer(Size size) {
+        return outer(size, 1);
+    }
+
+    /** Con {@code payloads} adjuntos Invoice (cada uno con su propio {@code cac:Attachment}). */
+    static String outer(Size size, int payloads) {
+        String inner = inner(size);
+        StringBuilder sb = new StringBuilder(4096 + payloads * (inner.length() + 200));
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n")
+          .append("<AttachedDocument xmlns=\"urn:oasis:names:specification:ubl:schema:xsd:AttachedDocument-2\"")
+          .append(" xmlns:cac=\"urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2\"")
+          .append(" xmlns:cbc=\"urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2\">\n")
+          .append("  <cbc:UBLVersionID>UBL 2.1</cbc:UBLVersionID>\n")
+          .append("  <cbc:ID>AD-1</cbc:ID>\n")
+          .append("  <cbc:IssueDate>2025-03-10</cbc:IssueDate>\n")
+          .append("  <cbc:ParentDocumentID>FE1234</cbc:ParentDocumentID>\n")
+          .append("  <cac:SenderParty>\n    <cac:PartyTaxScheme>\n")
+          .append("      <cbc:CompanyID schemeID=\"8\" schemeName=\"31\">900123456</cbc:CompanyID>\n")
+          .append("    </cac:PartyTaxScheme>\n  </cac:SenderParty>\n")
+          .append("  <cac:ReceiverParty>\n    <cac:PartyTaxScheme>\n")
+          .append("      <cbc:CompanyID schemeID=\"3\" schemeName=\"31\">860002184</cbc:CompanyID>\n")
+          .append("    </cac:PartyTaxScheme>\n  </cac:ReceiverParty>\n");
+        for (int i = 0; i < payloads; i++) {
+            sb.append("  <cac:Attachment>\n    <cac:ExternalReference>\n")
+              .append("      <cbc:MimeCode>text/xml</cbc:MimeCode>\n")
+              .append("      <cbc:Description><![CDATA[").append(inner).append("]]></cbc:Description>\n")
+              .append("    </cac:ExternalReference>\n  </cac:Attachment>\n");
+        }
+        sb.append("  <cac:ParentDocumentLineReference>\n    <cbc:LineID>1</cbc:LineID>\n")
+          .append("    <cac:DocumentReference>\n      <cbc:ID>FE1234</cbc:ID>\n")
+          .append("      <cac:Attachment>\n        <cac:ExternalReference>\n")
+          .append("          <cbc:Description><![CDATA[<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+          .append("<ApplicationResponse xmlns=\"urn:oasis:names:specification:ubl:schema:xsd:ApplicationResponse-2\">")
+          .append("<Id>1</Id></ApplicationResponse>]]></cbc:Description>\n")
+          .append("        </cac:ExternalReference>\n      </cac:Attachment>\n")
+          .append("    </cac:DocumentReference>\n  </cac:ParentDocumentLineReference>\n")
+          .append("</AttachedDocument>\n");
+        return sb.toString();
+    }
+
+    static String inner(Size size) {
+        StringBuilder sb = new StringBuilder(3072 + size.lines * 400);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n")
+          .append("<Invoice xmlns=\"urn:oasis:names:specification:ubl:schema:xsd:Invoice-2\"")
+          .append(" xmlns:cac=\"urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2\"")
+          .append(" xmlns:cbc=\"urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2\"")
+          .append(" xmlns:ext=\"urn:oasis:names:specification:ubl:schema:xsd:CommonExtensionComponents-2\"")
+          .append(" xmlns:sts=\"dian:gov:co:facturaelectronica:Structures-2-1\">\n")
+          .append("  <ext:UBLExtensions>\n    <ext:UBLExtension>\n      <ext:ExtensionContent>\n")
+          .append("        <sts:DianExtensions>\n          <sts:InvoiceControl>\n")
+          .append("            <sts:InvoiceAuthorization>18764000001234</sts:InvoiceAuthorization>\n")
+          .append("          </sts:InvoiceControl>\n        </sts:DianExtensions>\n")
+          .append("      </ext:ExtensionContent>\n    </ext:UBLExtension>\n")
+          .append("    <ext:UBLExtension>\n      <ext:ExtensionContent>\n        <CustomTagGeneral>\n")
+          .append("          <Interoperabilidad>\n            <Group schemeName=\"Sector Salud\">\n")
+          .append("              <Collection schemeName=\"Usuario\">\n");
+        additionalInformation(sb, "CODIGO PRESTADOR", "230010012345");
+        additionalInformation(sb, "MODALIDAD PAGO", "Pago por evento");
+        additionalInformation(sb, "COBERTURA PLAN BENEFICIOS", "Cobertura Póliza SOAT");
+        additionalInformation(sb, "numero  poliza", "ABC &amp; 1");
+        sb.append("              </Collection>\n            </Group>\n")
+          .append("            <Group>\n              <Id>77</Id>\n            </Group>\n")
+          .append("          </Interoperabilidad>\n")
+          .append("          <TotalesCop><FctConTotalCop>1</FctConTotalCop></TotalesCop>\n")
+          .append("        </CustomTagGeneral>\n      </ext:ExtensionContent>\n    </ext:UBLExtension>\n")
+          .append("  </ext:UBLExtensions>\n")
+          .append("  <cbc:UBLVersionID>UBL 2.1</cbc:UBLVersionID>\n")
+          .append("  <cbc:CustomizationID>10</cbc:CustomizationID>\n")
+          .append("  <cbc:ProfileID>DIAN 2.1</cbc:ProfileID>\n")
+          .append("  <cbc:ID>FE1234</cbc:ID>\n")
+          .append("  <cbc:IssueDate>2025-03-10</cbc:IssueDate>\n")
+          .append("  <cbc:Note>Linea de negocio: Urgencias</cbc:Note>\n")
+          .append("  <cac:PrepaidPayment>\n    <cbc:PaidAmount currencyID=\"COP\">0</cbc:PaidAmount>\n  </cac:PrepaidPayment>\n");
+        for (int i = 1; i <= size.lines; i++) {
+            sb.append("  <cac:InvoiceLine>\n")
+              .append("    <cbc:ID>").append(i).append("</cbc:ID>\n")
+              .append("    <cbc:LineExtensionAmount currencyID=\"COP\">").append(1000 + i).append(".50</cbc:LineExtensionAmount>\n")
+              .append("    <cac:Item>\n")
+              .append("      <cbc:Description>Servicio sintético ").append(i).append(" &lt;adulto&gt;</cbc:Description>\n")
+              .append("      <cac:StandardItemIdentification>\n")
+              .append("        <cbc:ID schemeID=\"999\">").append(890000 + i).append("</cbc:ID>\n")
+              .append("      </cac:StandardItemIdentification>\n")
+              .append("    </cac:Item>\n")
+              .append("  </cac:InvoiceLine>\n");
+        }
+        sb.append("</Invoice>\n");
+        return sb.toString();
+    }
+
+    private static void additionalInformation(StringBuilder sb, String name, String value) {
+        sb.append("                <AdditionalInformation>\n")
+          .append("                  <Name>").append(name).append("</Name>\n")
+          .append("                  <Value>").append(value).append("</Value>\n")
+          .append("                </AdditionalInformation>\n");
+    }
+
+    /** InvoiceData con un usuario y un servicio por línea, como el que resultaría de consolidar. */
+    static InvoiceData invoiceData(Size size) {
+        InvoiceData data = new InvoiceData();
+        data.numDocumentoIdObligado = "900123456";
+        data.numFactura = "FE1234";
+        UserData user = new UserData();
+        user.tipoDocumentoIdentificacion = "CC";
+        user.numDocumentoIdentificacion = "1067000000";
+        user.tipoUsuario = "10";
+        user.fechaNacimiento = "1990-01-01";
+        user.codSexo = "M";
+        user.codPaisResidencia = "170";
+        user.codMunicipioResidencia = "23001";
+        user.codZonaTerritorialResidencia = "02";
+        user.incapacidad = "NO";
+        user.codPaisOrigen = "170";
+        user.consecutivo = 1;
+        for (int i = 1; i <= size.lines; i++) {
+            UserData.OtrosServicios os = new UserData.OtrosServicios();
+            os.codPrestador = "2300100123";
+            os.numAutorizacion = "18764000001234";
+            os.fechaSuministroTecnologia = "2025-03-10 15:30";
+            os.tipoOS = "02";
+            os.codTecnologiaSalud = String.valueOf(890000 + i);
+            os.nomTecnologiaSalud = "Servicio sintético " + i;
+            os.cantidadOS = 1;
+            os.tipoDocumentoIdentificacion = "NIT";
+            os.numDocumentoIdentificacion = "860002184";
+            os.vrUnitOS = 1000 + i;
+            os.vrServicio = 1000 + i;
+            os.conceptoRecaudo = "03";
+            os.valorPagoModerador = 0;
+            os.consecutivo = i;
+            user.servicios.otrosServicios.add(os);
+        }
+        data.usuarios.add(user);
+        return data;
+    }
+}
@@ -0,0 +1,281 @@
+package xml.json.transformer.application;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Warmup; // no la clase Warmup de este paquete
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Etapas del flujo DOM: lectura, parseo del Invoice embebido, cada regla, transformación completa,
+ * serialización y extracción de campos del cuestionario.
+ * <p>
+ * Las reglas modifican el documento, así que cada invocación trabaja sobre una copia:
+ * {@link #cloneInner} mide sólo esa copia y sirve de línea base para restarla de {@code rule*}.
+ * <p>
+ * {@code rules*} compara las A–H completas: una pasada XPath por regla ({@link #rulesLegacy}) contra el recorrido
+ * único de {@link RuleSet}, con las reglas por defecto y con {@value #EXTRA_RULES} reglas más que no coinciden
+ * con nada (el costo no debería crecer con la cantidad de reglas).
+ * <p>
+ * {@code rewrite*} mide un Invoice embebido completo (parseo, A–H + F, serialización) con cada motor.
+ * <p>
+ * {@code extractFields*}: campos del cuestionario con {@link PrefillScanner} (una pasada por documento, sobre el
+ * DOM o con StAX sobre el texto) contra las consultas XPath {@code //...} de antes, una por campo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class XmlPipelineBenchmark {
+
+    private static final String FECHA = "2025-03-10 15:30";
+    private static final int EXTRA_RULES = 100;
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    public SyntheticAttachedDocument.Size size;
+
+    private Path file;
+    private String innerXml;
+    private Document outerDoc;
+    private Document innerDoc;
+    private ParsedInvoice invoice;
+    private XmlAdapterService service;
+    private XmlAdapterService staxService;
+    private XmlAdapterService xsltService;
+    private JsonBuilderService jsonService;
+    private RuleSet manyRules;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // Los println del flujo no aportan nada a la medición
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+
+        service = new XmlAdapterService(TransformEngine.DOM, false, true);
+        staxService = new XmlAdapterService(TransformEngine.STAX, false, true);
+        xsltService = new XmlAdapterService(TransformEngine.XSLT, false, true);
+        jsonService = new JsonBuilderService(null);
+        file = Files.createTempFile("xmlt-bench-" + size, ".xml");
+        Files.writeString(file, SyntheticAttachedDocument.outer(size), StandardCharsets.UTF_8);
+        innerXml = SyntheticAttachedDocument.inner(size);
+        outerDoc = service.readXml(file.toString());
+        innerDoc = service.parseInnerXml(innerXml);
+        invoice = ParsedInvoice.read(service, file);
+        invoice.embedded();
+        manyRules = manyRules();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.setOut(stdout);
+        Files.deleteIfExists(file);
+    }
+
+    // ---------------------------- Lectura / parseo ----------------------------
+
+    @Benchmark
+    public Document readXml() throws Exception {
+        return service.readXml(file.toString());
+    }
+
+    @Benchmark
+    public Document parseInnerXml() throws Exception {
+        return service.parseInnerXml(innerXml);
+    }
+
+    // ---------------------------- Reglas A–H + F ----------------------------
+
+    @Benchmark
+    public Document cloneInner() {
+        return copy();
+    }
+
+    @Benchmark
+    public Document ruleA_groupSchemeName() throws Exception {
+        Document d = copy();
+        LegacyRules.replaceGroupSchemeName(d);
+        return d;
+    }
+
+    @Benchmark
+    public Document ruleB_removeId() throws Exception {
+        Document d = copy();
+        LegacyRules.removeUnnamespacedElements(d, "Id");
+        return d;
+    }
+
+    @Benchmark
+    public Document ruleC_renameCodigoPrestador() throws Exception {
+        Document d = copy();
+        LegacyRules.renameCodigoPrestador(d);
+        return d;
+    }
+
+    @Benchmark
+    public Document ruleD_removeTotalesCop() throws Exception {
+        Document d = copy();
+        LegacyRules.removeUnnamespacedElements(d, "TotalesCop");
+        return d;
+    }
+
+    @Benchmark
+    public Document ruleE1_customizationId() throws Exception {
+        Document d = copy();
+        LegacyRules.replaceCustomizationId(d);
+        return d;
+    }
+
+    @Benchmark
+    public Document ruleE2_valueSchemes() throws Exception {
+        Document d = copy();
+        LegacyRules.adjustValueElements(d);
+        return d;
+    }
+
+    @Benchmark
+    public Document ruleG_truncateCodigoPrestador() throws Exception {
+        Document d = copy();
+        LegacyRules.truncateCodigoPrestador(d);
+        return d;
+    }
+
+    @Benchmark
+    public Document ruleH_removePrepaidPayment() throws Exception {
+        Document d = copy();
+        LegacyRules.removeByQualifiedName(d, "cac:PrepaidPayment");
+        return d;
+    }
+
+    @Benchmark
+    public Document rulesLegacy() throws Exception {
+        Document d = copy();
+        LegacyRules.apply(d);
+        return d;
+    }
+
+    @Benchmark
+    public Document rulesRuleSet() {
+        Document d = copy();
+        RuleSet.defaults().apply(d);
+        return d;
+    }
+
+    @Benchmark
+    public Document rulesRuleSetMany() {
+        Document d = copy();
+        manyRules.apply(d);
+        return d;
+    }
+
+    @Benchmark
+    public Document stepF_insertInvoicePeriod() throws Exception {
+        Document d = copy();
+        service.insertInvoicePeriod(d, FECHA);
+        return d;
+    }
+
+    @Benchmark
+    public Document applyManualTransformations() throws Exception {
+        return service.applyManualTransformations(invoice, FECHA);
+    }
+
+    @Benchmark
+    public String rewriteDom() throws Exception {
+        return service.rewriteEmbedded(innerXml, null, FECHA);
+    }
+
+    @Benchmark
+    public String rewriteStax() throws Exception {
+        return staxService.rewriteEmbedded(innerXml, null, FECHA);
+    }
+
+    @Benchmark
+    public String rewriteXslt() throws Exception {
+        return xsltService.rewriteEmbedded(innerXml, null, FECHA);
+    }
+
+    // ---------------------------- Salida / extracción ----------------------------
+
+    /** Serialización anterior del Invoice embebido: Transformer + limpieza con regex + marco de saltos. */
+    @Benchmark
+    public String serializeXml() throws Exception {
+        return "\n" + service.serializeXml(innerDoc).replaceAll("\\n\\s*\\n", "\n").trim() + "\n";
+    }
+
+    @Benchmark
+    public String innerXmlWriter() {
+        return InnerXmlWriter.write(innerDoc);
+    }
+
+    @Benchmark
+    public void extractFields(Blackhole bh) {
+        bh.consume(jsonService.extractFields(outerDoc, innerDoc, "2300100123"));
+    }
+
+    /** Modo streaming: el Invoice embebido como texto, sin DOM. */
+    @Benchmark
+    public PrefillScanner.EmbeddedFields extractFieldsStax() throws Exception {
+        return PrefillScanner.embedded(innerXml);
+    }
+
+    /** Lo que hacían antes JsonBuilderService y ParsedInvoice: una consulta XPath por campo. */
+    @Benchmark
+    public void extractFieldsXPath(Blackhole bh) throws Exception {
+        for (String expr : XPATH_OUTER) bh.consume(XPathRegistry.string(outerDoc, expr));
+        for (String expr : XPATH_EMBEDDED) bh.consume(XPathRegistry.string(innerDoc, expr));
+    }
+
+    private static final String[] XPATH_OUTER = {
+            "//*[local-name()='IssueDate'][1]",
+            "//*[local-name()='ParentDocumentID'][1]",
+            "//cbc:CompanyID[@schemeID='8']",
+            "//cbc:ParentDocumentID",
+            "//cac:ReceiverParty//cac:PartyTaxScheme//cbc:CompanyID",
+            "//cac:AccountingCustomerParty//cac:PartyTaxScheme//cbc:CompanyID",
+    };
+
+    private static final String[] XPATH_EMBEDDED = {
+            "//*[local-name()='AdditionalInformation']/*[local-name()='Name' and "
+                    + "(normalize-space(text())='CODIGO PRESTADOR' or normalize-space(text())='CODIGO_PRESTADOR')]"
+                    + "/following-sibling::*[local-name()='Value'][1]",
+            "//cbc:Note",
+            "//sts:InvoiceAuthorization",
+            "//cac:StandardItemIdentification/cbc:ID",
+            "//cac:Item/cbc:Description",
+            "//cbc:LineExtensionAmount",
+    };
+
+    /** Las reglas por defecto más {@link #EXTRA_RULES} sobre nombres que el documento no tiene. */
+    private static RuleSet manyRules() throws Exception {
+        StringBuilder json = new StringBuilder();
+        try (var in = RuleSet.class.getResourceAsStream(RuleSet.DEFAULT_RESOURCE)) {
+            String defaults = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            json.append(defaults, 0, defaults.lastIndexOf(']'));
+        }
+        for (int i = 0; i < EXTRA_RULES; i++) {
+            json.append(",{\"id\":\"X").append(i).append("\",\"match\":{\"localName\":\"Extra").append(i)
+                    .append("\",\"text\":\"\\\\d+\"},\"actions\":[{\"type\":\"remove\"}]}");
+        }
+        json.append("]}");
+        Path rules = Files.createTempFile("xmlt-bench-rules", ".json");
+        try {
+            Files.writeString(rules, json, StandardCharsets.UTF_8);
+            return RuleSet.load(rules);
+        } finally {
+            Files.deleteIfExists(rules);
+        }
+    }
+
+    private Document copy() {
+        return (Document) innerDoc.cloneNode(true);
+    }
+}
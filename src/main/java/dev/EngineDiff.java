@@ -0,0 +1,114 @@
+package dev;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import xml.json.transformer.application.TransformEngine;
+import xml.json.transformer.application.XmlAdapterService;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compara la salida de los motores de transformación contra DOM sobre uno o varios AttachedDocument.
+ * Uso: EngineDiff [<archivo.xml>...] [fechaSuministro "yyyy-MM-dd HH:mm"]; sin archivos usa el corpus incluido
+ * ({@link #CORPUS}: el documento de entrenamiento y los casos límite de {@code /dev/engine-diff}).
+ * <ul>
+ *   <li>{@code IGUAL}: el texto de cada Invoice embebido es idéntico byte a byte (lo esperado para STAX y XSLT).</li>
+ *   <li>{@code OK}: mismo árbol sin contar los textos en blanco.</li>
+ *   <li>{@code DIFF}: salida distinta.</li>
+ * </ul>
+ * Termina con código 1 si hubo algún DIFF.
+ */
+public class EngineDiff {
+
+    /** Recursos del classpath que se comparan cuando no se indican archivos. */
+    static final List<String> CORPUS = List.of(
+            "/train/attached-document.xml",
+            "/dev/engine-diff/cdata.xml",
+            "/dev/engine-diff/leaf-comments.xml");
+
+    public static void main(String[] args) throws Exception {
+        List<String> paths = new ArrayList<>(List.of(args));
+        String fecha = "2025-03-09 15:30";
+        if (!paths.isEmpty() && !paths.get(paths.size() - 1).toLowerCase().endsWith(".xml")) {
+            fecha = paths.remove(paths.size() - 1);
+        }
+        boolean corpus = paths.isEmpty();
+        if (corpus) paths.addAll(CORPUS);
+
+        boolean anyDiff = false;
+        for (String path : paths) {
+            List<String> reference = null;
+            for (TransformEngine engine : TransformEngine.values()) {
+                XmlAdapterService svc = new XmlAdapterService(engine);
+                Document doc = corpus ? readResource(svc, path) : svc.readXml(path);
+                svc.applyManualTransformations(doc, fecha);
+                List<String> inner = embeddedTexts(doc);
+                if (reference == null) {
+                    reference = inner;
+                    continue;
+                }
+                String verdict;
+                if (reference.equals(inner)) {
+                    verdict = "IGUAL";
+                } else if (sameTrees(reference, inner)) {
+                    verdict = "OK   ";
+                } else {
+                    verdict = "DIFF ";
+                    anyDiff = true;
+                }
+                System.out.println(verdict + " " + TransformEngine.DOM + " vs " + engine + "  " + path);
+            }
+        }
+        if (anyDiff) System.exit(1);
+    }
+
+    private static Document readResource(XmlAdapterService svc, String name) throws Exception {
+        try (InputStream in = EngineDiff.class.getResourceAsStream(name)) {
+            if (in == null) throw new IllegalStateException("Recurso no encontrado: " + name);
+            return svc.readXml(in);
+        }
+    }
+
+    private static List<String> embeddedTexts(Document outer) {
+        List<String> out = new ArrayList<>();
+        NodeList ds = outer.getElementsByTagNameNS("*", "Description");
+        for (int i = 0; i < ds.getLength(); i++) {
+            String text = ds.item(i).getTextContent();
+            if (text.trim().startsWith("<")) out.add(text);
+        }
+        return out;
+    }
+
+    private static boolean sameTrees(List<String> a, List<String> b) throws Exception {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!parse(a.get(i)).isEqualNode(parse(b.get(i)))) return false;
+        }
+        return true;
+    }
+
+    private static Document parse(String text) throws Exception {
+        var dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        text = text.trim().replaceFirst("<\\?xml.*?\\?>", "").trim();
+        Document d = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        stripWhitespace(d.getDocumentElement());
+        return d;
+    }
+
+    private static void stripWhitespace(Node n) {
+        Node c = n.getFirstChild();
+        while (c != null) {
+            Node next = c.getNextSibling();
+            if (c.getNodeType() == Node.TEXT_NODE && c.getNodeValue().isBlank()) n.removeChild(c);
+            else stripWhitespace(c);
+            c = next;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package dev;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Carga contra el servidor de {@code --serve}: envía la misma factura una y otra vez desde N clientes y
+ * reporta peticiones/s, latencias (p50/p95/p99) y conteo por código HTTP (503 = backpressure).
+ * Uso: HttpLoad <http://127.0.0.1:8080/transform> <archivo.xml> <answers.json> [concurrencia] [peticiones]
+ */
+public class HttpLoad {
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args[0]);
+        String xml = Files.readString(Path.of(args[1]));
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int total = args.length > 4 ? Integer.parseInt(args[4]) : 1_000;
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode body = mapper.createObjectNode();
+        body.put("xml", xml);
+        body.set("answers", mapper.readTree(Path.of(args[2]).toFile()));
+        byte[] payload = mapper.writeValueAsBytes(body);
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                .build();
+
+        long[] latencies = new long[total];
+        AtomicInteger next = new AtomicInteger();
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder errors = new LongAdder();
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long t0 = System.nanoTime();
+        for (int c = 0; c < concurrency; c++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < total) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> r = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        statuses.computeIfAbsent(r.statusCode(), k -> new LongAdder()).increment();
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                    latencies[i] = System.nanoTime() - start;
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf(Locale.ROOT, "%d peticiones, %d clientes, %.2f s → %.1f req/s%n", total, concurrency, secs, total / secs);
+        System.out.printf(Locale.ROOT, "latencia ms: p50 %.2f  p95 %.2f  p99 %.2f  máx %.2f%n",
+                pct(latencies, 50), pct(latencies, 95), pct(latencies, 99), latencies[total - 1] / 1e6);
+        Map<Integer, Long> byStatus = new TreeMap<>();
+        statuses.forEach((k, v) -> byStatus.put(k, v.sum()));
+        System.out.println("códigos: " + byStatus + (errors.sum() > 0 ? ", errores de red: " + errors.sum() : ""));
+    }
+
+    private static double pct(long[] sorted, int p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, idx)] / 1e6;
+    }
+}
@@ -0,0 +1,55 @@
+package dev;
+
+import org.w3c.dom.Document;
+import xml.json.transformer.application.XmlPools;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Mide el costo por documento de parsear + serializar con factorías nuevas en cada llamada
+ * (comportamiento anterior) frente a {@link XmlPools}.
+ * Uso: XmlPoolBench <archivo.xml> [iteraciones]
+ */
+public class XmlPoolBench {
+    public static void main(String[] args) throws Exception {
+        byte[] xml = Files.readAllBytes(Path.of(args[0]));
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+
+        for (int round = 1; round <= 3; round++) { // las primeras rondas calientan el JIT
+            long fresh = time(n, () -> {
+                DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+                dbf.setNamespaceAware(true);
+                Document d = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+                Transformer t = TransformerFactory.newInstance().newTransformer();
+                t.setOutputProperty(OutputKeys.INDENT, "yes");
+                t.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+                t.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+                t.transform(new DOMSource(d), new StreamResult(new StringWriter()));
+            });
+            long pooled = time(n, () -> {
+                Document d = XmlPools.documentBuilder().parse(new ByteArrayInputStream(xml));
+                XmlPools.indentingTransformer().transform(new DOMSource(d), new StreamResult(new StringWriter()));
+            });
+            System.out.printf(Locale.ROOT, "ronda %d: nuevo=%.1f µs/doc  pool=%.1f µs/doc  (%.2fx)%n",
+                    round, fresh / 1000.0 / n, pooled / 1000.0 / n, (double) fresh / pooled);
+        }
+    }
+
+    private interface Body { void run() throws Exception; }
+
+    private static long time(int n, Body body) throws Exception {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) body.run();
+        return System.nanoTime() - t0;
+    }
+}
@@ -1,25 +1,32 @@
 package xml.json.transformer;
 
-import org.w3c.dom.Document;
-import xml.json.transformer.application.JsonBuilderService;
+import xml.json.transformer.application.BatchRunner;
+import xml.json.transformer.application.InvoiceProcessor;
+import xml.json.transformer.application.ProcessingManifest;
+import xml.json.transformer.application.TrainingRun;
+import xml.json.transformer.application.TransformServer;
+import xml.json.transformer.application.Warmup;
+import xml.json.transformer.application.WatchDaemon;
+import xml.json.transformer.application.Workers;
 import xml.json.transformer.application.XmlAdapterService;
-import xml.json.transformer.domain.InvoiceData;
 import xml.json.transformer.licensing.ActivationGate;
+import xml.json.transformer.licensing.LicenseState;
+import xml.json.transformer.ui.StartupTimings;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathFactory;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.prefs.Preferences;
 
 public class Main {
@@ -37,6 +44,44 @@ public class Main {
         }
 
         public static void main(String[] args) {
+                // Modo sin interfaz: --batch <inDir> <outDir> [opciones]
+                if (args.length > 0 && "--batch".equals(args[0])) {
+                        System.exit(BatchRunner.run(args));
+                        return;
+                }
+                // Entrenamiento para AppCDS: --train [N]
+                if (args.length > 0 && "--train".equals(args[0])) {
+                        System.exit(TrainingRun.run(args));
+                        return;
+                }
+                // Vigilar una carpeta: --watch <inDir> <outDir> [opciones]
+                if (args.length > 0 && "--watch".equals(args[0])) {
+                        System.exit(WatchDaemon.run(args));
+                        return;
+                }
+                // Servicio HTTP local: --serve <port> [opciones]
+                if (args.length > 0 && "--serve".equals(args[0])) {
+                        System.exit(TransformServer.run(args));
+                        return;
+                }
+
+                StartupTimings.mark("main");
+
+                // Arranque sin bloquear el EDT: íconos, licencia (huella incluida) y precarga de clases en paralelo
+                ExecutorService startup = Workers.perTaskExecutor("xmlt-startup");
+                CompletableFuture<List<Image>> icons = CompletableFuture.supplyAsync(Main::loadAppIcons, startup);
+                CompletableFuture<String> license = CompletableFuture.supplyAsync(LicenseState::refresh, startup);
+                CompletableFuture.runAsync(() -> {
+                        Warmup.run();
+                        StartupTimings.mark("precarga");
+                }, startup);
+                startup.shutdown(); // las tareas ya enviadas terminan; no se aceptan más
+
+                SwingUtilities.invokeLater(() -> createAndShow(icons, license));
+        }
+
+        /** Ventana principal; corre en el EDT. */
+        private static void createAndShow(CompletableFuture<List<Image>> icons, CompletableFuture<String> license) {
                 try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); } catch (Exception ignore) {}
 
                 JFrame app = new JFrame("XML Transformer");
@@ -44,39 +89,52 @@ public class Main {
                 app.setSize(520, 300);
                 app.setLocationByPlatform(true);
 
-                List<Image> icons = loadAppIcons();
-                if (!icons.isEmpty()) {
-                        app.setIconImages(icons);
-                        if (Taskbar.isTaskbarSupported()) {
-                                try { Taskbar.getTaskbar().setIconImage(icons.get(Math.min(1, icons.size()-1))); } catch (Exception ignore) {}
-                        }
-                }
-
                 JLabel title = new JLabel("XML Transformer", SwingConstants.CENTER);
                 title.setFont(title.getFont().deriveFont(Font.BOLD, 20f));
-                JLabel hint = new JLabel("Activa tu licencia y luego haz clic en \"Iniciar\".", SwingConstants.CENTER);
+                JLabel hint = new JLabel("Verificando licencia…", SwingConstants.CENTER);
                 JButton startBtn = new JButton("Iniciar");
                 startBtn.setEnabled(false); // ← bloqueado hasta activar
+                JProgressBar bar = new JProgressBar(0, 100);
+                bar.setStringPainted(true);
+                bar.setVisible(false);
+                JButton cancelBtn = new JButton("Cancelar");
+                cancelBtn.setVisible(false);
 
                 JPanel root = new JPanel(new BorderLayout());
                 root.add(title, BorderLayout.NORTH);
                 root.add(hint, BorderLayout.CENTER);
                 JPanel south = new JPanel(new FlowLayout(FlowLayout.CENTER));
                 south.add(startBtn);
+                south.add(bar);
+                south.add(cancelBtn);
                 root.add(south, BorderLayout.SOUTH);
                 app.setContentPane(root);
                 app.setVisible(true);
+                StartupTimings.mark("ventana");
 
-                // 1) Gate de activación SIN permitir continuar si falla
-                boolean activated = ActivationGate.ensureActivated(app);
-                startBtn.setEnabled(activated);
-                if (!activated) {
-                        JOptionPane.showMessageDialog(app,
-                                "La aplicación requiere una licencia válida para continuar.",
-                                "Licencia requerida", JOptionPane.INFORMATION_MESSAGE);
-                }
+                icons.thenAccept(imgs -> SwingUtilities.invokeLater(() -> applyIcons(app, imgs)));
+
+                // 1) Gate de activación SIN permitir continuar si falla (la verificación ya corrió en segundo plano)
+                license.whenComplete((err, ex) -> SwingUtilities.invokeLater(() -> {
+                        StartupTimings.mark("licencia");
+                        // err/ex ya son el resultado de LicenseState.refresh(): no repetir DPAPI ni RSA en el EDT
+                        Throwable failure = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        boolean activated = LicenseState.isValid() || ActivationGate.ensureActivated(app, err, failure);
+                        startBtn.setEnabled(activated);
+                        hint.setText(activated ? "Haz clic en \"Iniciar\" y selecciona el XML."
+                                : "Activa tu licencia y luego haz clic en \"Iniciar\".");
+                        if (activated) {
+                                StartupTimings.interactive();
+                        } else {
+                                JOptionPane.showMessageDialog(app,
+                                        "La aplicación requiere una licencia válida para continuar.",
+                                        "Licencia requerida", JOptionPane.INFORMATION_MESSAGE);
+                        }
+                }));
+
+                Controls ui = new Controls(app, hint, startBtn, bar, cancelBtn);
 
-                // 2) Aun así, re-chequea antes de correr
+                // 2) Aun así, re-chequea antes de correr (con la licencia ya verificada es una lectura en memoria)
                 startBtn.addActionListener(e -> {
                         if (!ActivationGate.ensureActivated(app)) {
                                 JOptionPane.showMessageDialog(app,
@@ -84,101 +142,187 @@ public class Main {
                                         "Licencia", JOptionPane.WARNING_MESSAGE);
                                 return;
                         }
-                        runFlow(app);
+                        runFlow(ui);
                 });
         }
 
-        private static void runFlow(JFrame app) {
-                try {
-                        Preferences prefs = Preferences.userNodeForPackage(Main.class);
-                        String lastDir = prefs.get("lastDir", System.getProperty("user.home"));
-
-                        JFileChooser fc = new JFileChooser();
-                        fc.setDialogTitle("Seleccione el archivo XML de entrada");
-                        fc.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Archivos XML (*.xml)", "xml"));
-                        fc.setCurrentDirectory(new File(lastDir));
-                        if (fc.showOpenDialog(app) != JFileChooser.APPROVE_OPTION) {
-                                JOptionPane.showMessageDialog(app, "❌ No se seleccionó ningún archivo. Proceso cancelado.");
-                                return;
-                        }
-                        File inputFile = fc.getSelectedFile();
-                        prefs.put("lastDir", inputFile.getParent());
-                        System.out.println("📂 XML seleccionado: " + inputFile.getAbsolutePath());
+        private static void applyIcons(JFrame app, List<Image> icons) {
+                if (icons.isEmpty()) return;
+                app.setIconImages(icons);
+                if (Taskbar.isTaskbarSupported()) {
+                        try { Taskbar.getTaskbar().setIconImage(icons.get(Math.min(1, icons.size()-1))); } catch (Exception ignore) {}
+                }
+        }
+
+        /** Controles de la ventana que cambian mientras se procesa un archivo. */
+        private static final class Controls {
+                final JFrame app;
+                final JLabel hint;
+                final JButton start;
+                final JProgressBar bar;
+                final JButton cancel;
 
-                        XmlAdapterService xmlService = new XmlAdapterService();
-                        Document originalDoc = xmlService.readXml(inputFile.getAbsolutePath());
+                Controls(JFrame app, JLabel hint, JButton start, JProgressBar bar, JButton cancel) {
+                        this.app = app;
+                        this.hint = hint;
+                        this.start = start;
+                        this.bar = bar;
+                        this.cancel = cancel;
+                }
 
-                        XPathFactory xpf = XPathFactory.newInstance();
-                        XPath xp = xpf.newXPath();
+                void busy(SwingWorker<?, ?> worker) {
+                        start.setEnabled(false);
+                        bar.setValue(0);
+                        bar.setVisible(true);
+                        for (var l : cancel.getActionListeners()) cancel.removeActionListener(l);
+                        cancel.addActionListener(e -> {
+                                hint.setText("Cancelando…");
+                                worker.cancel(true);
+                        });
+                        cancel.setEnabled(true);
+                        cancel.setVisible(true);
+                        app.getContentPane().revalidate();
+                }
 
-                        String issueDateStr = (String) xp.evaluate("string(//*[local-name()='IssueDate'][1])",
-                                originalDoc, XPathConstants.STRING);
-                        if (issueDateStr == null || issueDateStr.isBlank()) {
-                                JOptionPane.showMessageDialog(app, "❌ No se encontró <cbc:IssueDate>.", "Error", JOptionPane.ERROR_MESSAGE);
-                                return;
-                        }
-                        LocalDate issueDate = LocalDate.parse(issueDateStr.trim());
+                void idle() {
+                        start.setEnabled(true);
+                        bar.setVisible(false);
+                        cancel.setVisible(false);
+                        app.getContentPane().revalidate();
+                }
+        }
 
-                        String factura = (String) xp.evaluate("string(//*[local-name()='ParentDocumentID'][1])",
-                                originalDoc, XPathConstants.STRING);
-                        if (factura == null || factura.isBlank()) {
-                                JOptionPane.showMessageDialog(app, "❌ No se encontró <cbc:ParentDocumentID>.", "Error", JOptionPane.ERROR_MESSAGE);
-                                return;
-                        }
-                        factura = factura.trim();
-
-                        Path xmlDir = inputFile.getParentFile().toPath();
-                        Path outDir = xmlDir.resolve(factura);
-                        Files.createDirectories(outDir);
-                        String outXml = outDir.resolve(factura + ".xml").toString();
-                        String outJson = outDir.resolve(factura + ".json").toString();
-                        System.out.println("📦 Carpeta destino: " + outDir);
-
-                        Document embeddedXmlForPrestador = xmlService.extractEmbeddedXml(originalDoc);
-                        String codPrestador = xp.evaluate(
-                                "string(//*[local-name()='AdditionalInformation']/*[local-name()='Name' and " +
-                                        "(normalize-space(text())='CODIGO PRESTADOR' or normalize-space(text())='CODIGO_PRESTADOR')]" +
-                                        "/following-sibling::*[local-name()='Value'][1])",
-                                embeddedXmlForPrestador
-                        ).trim();
-                        if (codPrestador == null || codPrestador.isBlank()) {
-                                System.err.println("⚠️ No se encontró codPrestador en el XML embebido.");
-                        } else {
-                                System.out.println("💾 codPrestador: " + codPrestador);
-                        }
+        /** Elige el archivo en el EDT y lo procesa en un {@link FlowWorker}. */
+        private static void runFlow(Controls ui) {
+                Preferences prefs = Preferences.userNodeForPackage(Main.class);
+                String lastDir = prefs.get("lastDir", System.getProperty("user.home"));
 
-                        Document modifiedDoc = xmlService.readXml(inputFile.getAbsolutePath());
+                JFileChooser fc = new JFileChooser();
+                fc.setDialogTitle("Seleccione el archivo XML de entrada");
+                fc.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Archivos XML (*.xml)", "xml"));
+                fc.setCurrentDirectory(new File(lastDir));
+                if (fc.showOpenDialog(ui.app) != JFileChooser.APPROVE_OPTION) {
+                        JOptionPane.showMessageDialog(ui.app, "❌ No se seleccionó ningún archivo. Proceso cancelado.");
+                        return;
+                }
+                File inputFile = fc.getSelectedFile();
+                prefs.put("lastDir", inputFile.getParent());
+                System.out.println("📂 XML seleccionado: " + inputFile.getAbsolutePath());
 
-                        System.out.println("📄 Generando JSON (cuestionario)...");
-                        Document embeddedXml = xmlService.extractEmbeddedXml(modifiedDoc);
-                        JsonBuilderService jsonService = new JsonBuilderService(issueDate);
-                        InvoiceData data = jsonService.buildInvoiceData(originalDoc, embeddedXml, codPrestador);
-                        if (data == null) {
-                                System.out.println("⛔ Operación cancelada por el usuario.");
-                                return;
+                FlowWorker worker = new FlowWorker(ui, inputFile, prefs);
+                ui.busy(worker);
+                worker.execute();
+        }
+
+        /**
+         * Lee, transforma y escribe un archivo fuera del EDT. El avance llega a la barra con {@code setProgress}
+         * y el nombre del paso con {@code publish}; el cuestionario y las confirmaciones se muestran en el EDT.
+         */
+        private static final class FlowWorker extends SwingWorker<InvoiceProcessor.Result, String> {
+                private final Controls ui;
+                private final File inputFile;
+                private final Preferences prefs;
+                private volatile boolean started;
+
+                FlowWorker(Controls ui, File inputFile, Preferences prefs) {
+                        this.ui = ui;
+                        this.inputFile = inputFile;
+                        this.prefs = prefs;
+                        addPropertyChangeListener(e -> {
+                                if ("progress".equals(e.getPropertyName())) ui.bar.setValue((Integer) e.getNewValue());
+                        });
+                }
+
+                @Override
+                protected InvoiceProcessor.Result doInBackground() throws Exception {
+                        started = true;
+                        try {
+                                Path outRoot = inputFile.getParentFile().toPath();
+                                XmlAdapterService xmlService = new XmlAdapterService();
+                                InvoiceProcessor processor = new InvoiceProcessor(xmlService);
+                                processor.setProgress((percent, step) -> {
+                                        setProgress(Math.max(0, Math.min(100, percent)));
+                                        publish(step);
+                                });
+                                try (ProcessingManifest manifest = ProcessingManifest.open(outRoot)) {
+                                        // Ya procesado sin cambios: preguntar antes de repetir el cuestionario
+                                        boolean force = false;
+                                        ProcessingManifest.Entry prev = manifest.get(inputFile.toPath());
+                                        if (prev != null && manifest.isUpToDate(inputFile.toPath(),
+                                                ProcessingManifest.sha256(inputFile.toPath()), xmlService.engineVersion(), null)) {
+                                                if (!confirm("ℹ️ Este archivo ya se procesó sin cambios (" + prev.factura + ", " + prev.processedAt + ").\n"
+                                                        + "¿Desea procesarlo de nuevo?", "Archivo ya procesado")) {
+                                                        return null;
+                                                }
+                                                force = true;
+                                        }
+                                        return processor.process(inputFile, outRoot, manifest, force);
+                                }
+                        } finally {
+                                // Se rehabilita "Iniciar" cuando el hilo realmente terminó (tras cancelar puede tardar un paso)
+                                SwingUtilities.invokeLater(ui::idle);
                         }
+                }
 
-                        String fechaSuministro = jsonService.getFechaSuministro();
+                private boolean confirm(String message, String title) throws Exception {
+                        int[] choice = {JOptionPane.NO_OPTION};
+                        SwingUtilities.invokeAndWait(() -> choice[0] = JOptionPane.showConfirmDialog(ui.app, message, title,
+                                JOptionPane.YES_NO_OPTION));
+                        return choice[0] == JOptionPane.YES_OPTION;
+                }
+
+                @Override
+                protected void process(List<String> steps) {
+                        ui.hint.setText(steps.get(steps.size() - 1) + "…");
+                }
 
-                        System.out.println("🛠 Aplicando transformaciones al XML embebido...");
-                        xmlService.applyManualTransformations(modifiedDoc, fechaSuministro);
+                @Override
+                protected void done() {
+                        try {
+                                InvoiceProcessor.Result result = get();
+                                if (result == null) {
+                                        ui.hint.setText("Haz clic en \"Iniciar\" y selecciona el XML.");
+                                        return;
+                                }
+                                StartupTimings.firstResult();
+                                ui.hint.setText("✅ " + result.factura);
+                                String outXml = result.outXml.toString();
+                                String outJson = result.outJson.toString();
+                                Path outDir = result.outDir;
 
-                        xmlService.writeJson(data, outJson);
-                        xmlService.writeXml(modifiedDoc, outXml);
+                                JOptionPane.showMessageDialog(ui.app,
+                                        "✅ Proceso completado exitosamente.\n\n" +
+                                                "📘 XML modificado: " + outXml + "\n" +
+                                                "📗 JSON generado: " + outJson,
+                                        "Proceso finalizado", JOptionPane.INFORMATION_MESSAGE);
 
-                        JOptionPane.showMessageDialog(app,
-                                "✅ Proceso completado exitosamente.\n\n" +
-                                        "📘 XML modificado: " + outXml + "\n" +
-                                        "📗 JSON generado: " + outJson,
-                                "Proceso finalizado", JOptionPane.INFORMATION_MESSAGE);
+                                try { if (Desktop.isDesktopSupported()) Desktop.getDesktop().open(outDir.toFile()); } catch (Exception ignore) {}
+                                prefs.put("lastDir", outDir.toString());
 
-                        try { if (Desktop.isDesktopSupported()) Desktop.getDesktop().open(outDir.toFile()); } catch (Exception ignore) {}
-                        prefs.put("lastDir", outDir.toString());
+                                System.out.println("🏁 Listo.");
+                        } catch (CancellationException e) {
+                                cancelled();
+                        } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                        } catch (ExecutionException e) {
+                                Throwable cause = e.getCause();
+                                if (cause instanceof CancellationException) {
+                                        cancelled();
+                                } else if (cause instanceof IllegalStateException) {
+                                        ui.hint.setText("❌ " + cause.getMessage());
+                                        JOptionPane.showMessageDialog(ui.app, cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                                } else {
+                                        cause.printStackTrace();
+                                        ui.hint.setText("❌ Error");
+                                        JOptionPane.showMessageDialog(ui.app, "❌ Error: " + cause.getMessage(), "Fallo", JOptionPane.ERROR_MESSAGE);
+                                }
+                        }
+                }
 
-                        System.out.println("🏁 Listo.");
-                } catch (Exception e) {
-                        e.printStackTrace();
-                        JOptionPane.showMessageDialog(app, "❌ Error: " + e.getMessage(), "Fallo", JOptionPane.ERROR_MESSAGE);
+                private void cancelled() {
+                        System.out.println("⛔ Proceso cancelado por el usuario.");
+                        ui.hint.setText("⛔ Proceso cancelado.");
+                        if (!started) ui.idle(); // cancelado antes de empezar: doInBackground no corrió
                 }
         }
 }
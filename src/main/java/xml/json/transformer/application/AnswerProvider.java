@@ -0,0 +1,28 @@
+package xml.json.transformer.application;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Origen de las respuestas del cuestionario: el formulario Swing ({@link SwingAnswerProvider}) o archivos
+ * de respuestas ({@link FileAnswerProvider}) para procesar sin nadie frente a la pantalla.
+ * Las implementaciones deben ser thread-safe: en batch se llaman desde varios hilos.
+ */
+public interface AnswerProvider {
+
+    /**
+     * @param xml       valores precargados del XML (incluye {@code parentDocumentId}, la clave de búsqueda).
+     * @param issueDate IssueDate del documento, para validar la fecha de suministro.
+     * @return las respuestas, o {@code null} si el usuario canceló.
+     * @throws IllegalStateException si no hay respuestas para esta factura.
+     */
+    Answers answersFor(PrefillFields xml, LocalDate issueDate) throws Exception;
+
+    /**
+     * Huella de las respuestas que se usarían para {@code parentDocumentId}, para detectar si cambiaron desde el
+     * último procesamiento ({@link ProcessingManifest}); null si no se puede saber sin preguntar (formulario).
+     */
+    default String fingerprint(String parentDocumentId) throws IOException {
+        return null;
+    }
+}
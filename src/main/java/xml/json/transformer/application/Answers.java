@@ -0,0 +1,140 @@
+package xml.json.transformer.application;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+
+/**
+ * Respuestas del cuestionario para UNA factura: lo que el usuario digita en el formulario o lo que trae
+ * un archivo de respuestas ({@link FileAnswerProvider}). Los nombres de los campos son las claves del
+ * JSON/CSV; las fechas van como texto ({@code yyyy-MM-dd} y {@code yyyy-MM-dd HH:mm}).
+ * <p>
+ * {@link #applyDefaults} completa lo que falte con {@link Defaults} y los valores del XML, y
+ * {@link #validate} aplica las mismas reglas (y mensajes) que el formulario.
+ */
+public final class Answers {
+
+    // STRICT: 2024-02-30 es un error, no 2024-02-29 (con STRICT el año va como "uuuu", "yyyy" exige la era)
+    static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("uuuu-MM-dd").withResolverStyle(ResolverStyle.STRICT);
+    static final DateTimeFormatter FECHA_HORA =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm").withResolverStyle(ResolverStyle.STRICT);
+
+    /** Clave en los archivos de respuestas masivos; el formulario no la usa. */
+    public String parentDocumentId;
+
+    public String tipoNota;
+    public String numNota;
+
+    // -------- usuario --------
+    public String tipoDocumentoIdentificacion;
+    public String numDocumentoIdentificacion;
+    public String tipoUsuario;
+    public String fechaNacimiento;              // yyyy-MM-dd (opcional)
+    public String codSexo;
+    public String codPaisResidencia;
+    public String codMunicipioResidencia;
+    public String codZonaTerritorialResidencia;
+    public String incapacidad;
+    public String codPaisOrigen;
+    public Integer consecutivo;
+
+    // -------- servicio --------
+    public String idMIPRES;
+    public String fechaSuministroTecnologia;    // yyyy-MM-dd HH:mm
+    public String tipoOS;
+    public String nomTecnologiaSalud;
+    public Integer cantidadOS;
+    public String tipoDocumentoIdentificacionServicio;
+    public String numDocumentoIdentificacionServicio;
+    public String conceptoRecaudo;
+    public Integer valorPagoModerador;
+    public String numFEVPagoModerador;
+    public Integer consecutivoServicio;
+
+    /** Completa los campos vacíos con los valores por defecto del formulario y los leídos del XML. */
+    public Answers applyDefaults(PrefillFields xml) {
+        tipoDocumentoIdentificacion = nvl(tipoDocumentoIdentificacion, Defaults.TIPO_DOCUMENTO);
+        tipoUsuario = nvl(tipoUsuario, Defaults.TIPO_USUARIO);
+        codPaisResidencia = nvl(codPaisResidencia, Defaults.COD_PAIS_RESIDENCIA);
+        codMunicipioResidencia = nvl(codMunicipioResidencia, Defaults.COD_MPIO_RESIDENCIA);
+        codZonaTerritorialResidencia = nvl(codZonaTerritorialResidencia, Defaults.COD_ZONA_TERRITORIAL);
+        incapacidad = nvl(incapacidad, Defaults.INCAPACIDAD[0]);
+        codPaisOrigen = nvl(codPaisOrigen, Defaults.COD_PAIS_ORIGEN);
+        if (consecutivo == null) consecutivo = Defaults.CONSECUTIVO;
+
+        tipoOS = nvl(tipoOS, Defaults.TIPO_OS);
+        if (cantidadOS == null) cantidadOS = Defaults.CANTIDAD[0];
+        tipoDocumentoIdentificacionServicio = nvl(tipoDocumentoIdentificacionServicio, Defaults.TIPO_DOCUMENTO);
+        conceptoRecaudo = nvl(conceptoRecaudo, Defaults.CONCEPTO_RECAUDO);
+        if (valorPagoModerador == null) valorPagoModerador = Defaults.VALOR_PAGO_MODERADOR;
+        if (consecutivoServicio == null) consecutivoServicio = Defaults.CONSECUTIVO;
+        if (xml != null) {
+            nomTecnologiaSalud = nvl(nomTecnologiaSalud, xml.nomTecnologia);
+            numDocumentoIdentificacionServicio = nvl(numDocumentoIdentificacionServicio, xml.docIdentServicio);
+        }
+        return this;
+    }
+
+    /**
+     * Reglas del formulario: obligatorios, fechaNacimiento anterior a hoy y fechaSuministroTecnologia
+     * no posterior a la IssueDate.
+     *
+     * @throws IllegalArgumentException con el mismo mensaje que muestra el formulario.
+     */
+    public void validate(LocalDate issueDate) {
+        numDocumentoIdentificacion = must(numDocumentoIdentificacion, "numDocumentoIdentificacion (usuario)");
+        tipoUsuario = must(tipoUsuario, "tipoUsuario");
+        codSexo = must(codSexo, "codSexo");
+        codPaisResidencia = must(codPaisResidencia, "codPaisResidencia");
+        codMunicipioResidencia = must(codMunicipioResidencia, "codMunicipioResidencia");
+        codZonaTerritorialResidencia = must(codZonaTerritorialResidencia, "codZonaTerritorialResidencia");
+        codPaisOrigen = must(codPaisOrigen, "codPaisOrigen");
+        nomTecnologiaSalud = must(nomTecnologiaSalud, "nomTecnologiaSalud");
+        numDocumentoIdentificacionServicio = must(numDocumentoIdentificacionServicio, "numDocumentoIdentificacion (servicio)");
+
+        if (fechaSuministroTecnologia == null || fechaSuministroTecnologia.isBlank()) {
+            throw new IllegalArgumentException("Debe seleccionar fecha de suministro.");
+        }
+        // Se guardan recortadas: así pasan al InvoicePeriod y al JSON RIPS tal como se validaron
+        fechaSuministroTecnologia = fechaSuministroTecnologia.trim();
+        LocalDateTime fechaSum = parse(fechaSuministroTecnologia, FECHA_HORA, "fechaSuministroTecnologia");
+
+        // a) fechaNacimiento < hoy
+        if (fechaNacimiento != null && !fechaNacimiento.isBlank()) {
+            fechaNacimiento = fechaNacimiento.trim();
+            LocalDate nacimiento = parse(fechaNacimiento, FECHA, "fechaNacimiento").toLocalDate();
+            if (!nacimiento.isBefore(LocalDate.now())) {
+                throw new IllegalArgumentException("La fecha de nacimiento debe ser anterior a hoy.");
+            }
+        }
+
+        // b) fechaSuministroTecnologia <= IssueDate
+        if (issueDate != null && fechaSum.toLocalDate().isAfter(issueDate)) {
+            throw new IllegalArgumentException(
+                    "La fecha de suministro no puede ser posterior a la IssueDate del XML (" + issueDate + ")."
+            );
+        }
+    }
+
+    private static LocalDateTime parse(String value, DateTimeFormatter format, String name) {
+        try {
+            return format == FECHA ? LocalDate.parse(value, format).atStartOfDay() : LocalDateTime.parse(value, format);
+        } catch (DateTimeParseException e) {
+            String pattern = format == FECHA ? "yyyy-MM-dd" : "yyyy-MM-dd HH:mm";
+            throw new IllegalArgumentException("El campo '" + name + "' debe tener el formato " + pattern + ": " + value);
+        }
+    }
+
+    private static String must(String v, String name) {
+        if (v == null || v.trim().isEmpty()) {
+            throw new IllegalArgumentException("El campo '" + name + "' es obligatorio.");
+        }
+        return v.trim();
+    }
+
+    private static String nvl(String s, String def) {
+        return (s == null || s.isBlank()) ? def : s;
+    }
+}
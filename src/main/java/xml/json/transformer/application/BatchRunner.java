@@ -0,0 +1,227 @@
+package xml.json.transformer.application;
+
+import xml.json.transformer.licensing.ActivationGate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Modo batch sin ventana principal:
+ * {@code --batch <inDir> <outDir> [--threads N] [--engine dom|stax|xslt] [--splice] [--streaming]
+ * [--compact] [--consolidate] [--answers <dir|archivo>] [--rules <archivo.json>] [--force]}.
+ * Recorre {@code inDir}, procesa cada {@code .xml} en un pool acotado y deja la salida en
+ * {@code outDir/<factura>/<factura>.xml|.json}. Al final imprime un resumen (archivos/s, fallos, tiempo total).
+ * <ul>
+ *   <li>{@code --consolidate}: además escribe un {@code outDir/rips_<obligado>.json} por obligado con todos sus
+ *       usuarios y servicios ({@link RipsConsolidator}).</li>
+ *   <li>Lo ya procesado queda en {@code outDir/.xmlt-manifest.tsv} ({@link ProcessingManifest}); al repetir el
+ *       batch sólo se procesan los archivos nuevos o cambiados, salvo con {@code --force}.</li>
+ *   <li>Las latencias por etapa ({@link StageMetrics}) se ven por JMX mientras corre y se resumen al final.</li>
+ *   <li>{@code --answers}: las respuestas del cuestionario salen de archivos ({@link FileAnswerProvider}: un
+ *       directorio de sidecars o un archivo masivo) y no se abre ningún formulario.</li>
+ *   <li>{@code --rules}: reglas de transformación propias en lugar de las A–H ({@link RuleSet}); sólo con el
+ *       motor dom. Su hash entra en la versión del manifiesto, así que cambiar las reglas reprocesa todo.</li>
+ * </ul>
+ */
+public final class BatchRunner {
+
+    private BatchRunner() {}
+
+    private static final String USAGE =
+            "Uso: --batch <inDir> <outDir> [--threads N] [--engine dom|stax|xslt] [--splice] [--streaming] [--compact] [--consolidate] [--answers <dir|archivo>] [--rules <archivo.json>] [--force]";
+
+    /** Opciones de línea de comandos del modo batch (y de {@link WatchDaemon}, que agrega las de vigilancia). */
+    static final class Options {
+        Path inDir;
+        Path outDir;
+        int threads = Runtime.getRuntime().availableProcessors();
+        TransformEngine engine = TransformEngine.fromSystemProperty();
+        boolean splice = Boolean.getBoolean("xmlt.splice");
+        boolean streaming = Boolean.getBoolean("xmlt.streaming");
+        boolean prettyJson = !Boolean.getBoolean("xmlt.json.compact");
+        boolean consolidate;
+        boolean force;
+        Path answers = System.getProperty("xmlt.answers") == null ? null : Path.of(System.getProperty("xmlt.answers"));
+        RuleSet rules; // null: RuleSet.configured()
+        // --watch
+        int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+        long settleMillis = 1000;
+        boolean initialScan;
+
+        static Options parse(String[] args) {
+            if (args.length < 3) throw new IllegalArgumentException("Faltan argumentos.");
+            Options o = new Options();
+            o.inDir = Path.of(args[1]).toAbsolutePath().normalize();
+            o.outDir = Path.of(args[2]).toAbsolutePath().normalize();
+            for (int i = 3; i < args.length; i++) {
+                if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                    o.threads = Integer.parseInt(args[++i]);
+                } else if ("--engine".equals(args[i]) && i + 1 < args.length) {
+                    o.engine = TransformEngine.parse(args[++i]);
+                } else if ("--splice".equals(args[i])) {
+                    o.splice = true;
+                } else if ("--streaming".equals(args[i])) {
+                    o.streaming = true;
+                } else if ("--compact".equals(args[i])) {
+                    o.prettyJson = false;
+                } else if ("--force".equals(args[i])) {
+                    o.force = true;
+                } else if ("--consolidate".equals(args[i])) {
+                    o.consolidate = true;
+                } else if ("--answers".equals(args[i]) && i + 1 < args.length) {
+                    o.answers = Path.of(args[++i]).toAbsolutePath().normalize();
+                } else if ("--rules".equals(args[i]) && i + 1 < args.length) {
+                    o.rules = RuleSet.load(Path.of(args[++i]).toAbsolutePath().normalize());
+                } else if ("--max-inflight".equals(args[i]) && i + 1 < args.length) {
+                    o.maxInFlight = Integer.parseInt(args[++i]);
+                } else if ("--settle-ms".equals(args[i]) && i + 1 < args.length) {
+                    o.settleMillis = Long.parseLong(args[++i]);
+                } else if ("--initial-scan".equals(args[i])) {
+                    o.initialScan = true;
+                } else {
+                    throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+                }
+            }
+            if (o.threads < 1) throw new IllegalArgumentException("--threads debe ser >= 1");
+            if (o.maxInFlight < 1) throw new IllegalArgumentException("--max-inflight debe ser >= 1");
+            if (o.settleMillis < 0) throw new IllegalArgumentException("--settle-ms debe ser >= 0");
+            if (!Files.isDirectory(o.inDir)) throw new IllegalArgumentException("No es un directorio: " + o.inDir);
+            if (o.answers != null && !Files.exists(o.answers)) throw new IllegalArgumentException("No existe: " + o.answers);
+            if (o.rules == null) o.rules = RuleSet.configured();
+            if (o.engine != TransformEngine.DOM && !o.rules.isDefault()) {
+                throw new IllegalArgumentException("--rules sólo se aplica con --engine dom");
+            }
+            if (o.engine == TransformEngine.XSLT) XsltInvoiceRewriter.configured(); // una hoja que no compila falla aquí
+            return o;
+        }
+
+        XmlAdapterService newXmlService() {
+            return new XmlAdapterService(engine, splice, prettyJson, rules);
+        }
+
+        /** Sin {@code --answers}: el cuestionario Swing de siempre. */
+        AnswerProvider newAnswerProvider() throws IOException {
+            return answers == null ? new SwingAnswerProvider() : FileAnswerProvider.forPath(answers);
+        }
+    }
+
+    /** Punto de entrada desde {@code Main}. Devuelve el código de salida del proceso. */
+    public static int run(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        if (!ActivationGate.isActivatedHeadless()) {
+            System.err.println("❌ La aplicación requiere una licencia válida para continuar.");
+            return 3;
+        }
+
+        try {
+            return runBatch(options);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    static int runBatch(Options o) throws Exception {
+        Path outDir = o.outDir;
+        int threads = o.threads;
+        Files.createDirectories(outDir);
+        List<Path> inputs = listInputs(o.inDir, outDir);
+        System.out.println("📂 Batch: " + inputs.size() + " XML en " + o.inDir + " → " + outDir
+                + " (" + threads + " hilos, motor " + o.engine + (o.splice ? ", empalme" : "") + (o.streaming ? ", streaming" : "")
+                + (o.consolidate ? ", consolidado" : "")
+                + (o.answers != null ? ", respuestas " + o.answers.getFileName() : "")
+                + (o.rules.isDefault() ? "" : ", " + o.rules) + ")");
+
+        // Pool acotado: la cola limita los archivos en vuelo y CallerRuns frena al productor si se llena
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger cancelled = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        List<String> failures = new CopyOnWriteArrayList<>();
+        RipsConsolidator consolidator = o.consolidate ? new RipsConsolidator() : null;
+        AnswerProvider answers = o.newAnswerProvider();
+        ProcessingManifest manifest = ProcessingManifest.open(outDir);
+
+        long t0 = System.nanoTime();
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                Path input = inputs.get(i);
+                long seq = i;
+                pool.execute(() -> {
+                    try {
+                        InvoiceProcessor processor = new InvoiceProcessor(o.newXmlService(), o.streaming, answers);
+                        InvoiceProcessor.Result r = processor.process(input.toFile(), outDir, manifest, o.force);
+                        if (r == null) cancelled.incrementAndGet();
+                        else {
+                            (r.skipped ? skipped : ok).incrementAndGet();
+                            if (consolidator != null) {
+                                // Omitido: se consolida el JSON que ya estaba en disco
+                                consolidator.add(seq, r.data != null ? r.data : JsonWriters.readInvoice(r.outJson));
+                            }
+                        }
+                    } catch (Exception e) {
+                        failures.add(input.getFileName() + ": " + e.getMessage());
+                        System.err.println("❌ " + input + ": " + e);
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            manifest.close();
+        }
+        if (consolidator != null && !consolidator.isEmpty()) {
+            consolidator.writeAll(outDir, o.prettyJson);
+        }
+        long elapsedNanos = System.nanoTime() - t0;
+
+        printSummary(inputs.size(), ok.get(), skipped.get(), cancelled.get(), failures, elapsedNanos);
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    private static List<Path> listInputs(Path inDir, Path outDir) throws IOException {
+        try (Stream<Path> s = Files.walk(inDir)) {
+            return s.filter(Files::isRegularFile)
+                    .filter(p -> !p.startsWith(outDir)) // no re-procesar la salida si outDir está dentro de inDir
+                    .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".xml"))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static void printSummary(int total, int ok, int skipped, int cancelled, List<String> failures, long elapsedNanos) {
+        double secs = elapsedNanos / 1_000_000_000.0;
+        double rate = secs > 0 ? ok / secs : 0;
+        System.out.println();
+        System.out.println("================ Resumen batch ================");
+        System.out.println("Archivos encontrados : " + total);
+        System.out.println("Procesados OK        : " + ok);
+        System.out.println("Omitidos (sin cambio): " + skipped);
+        System.out.println("Cancelados           : " + cancelled);
+        System.out.println("Fallos               : " + failures.size());
+        System.out.printf(Locale.ROOT, "Tiempo total         : %.3f s%n", secs);
+        System.out.printf(Locale.ROOT, "Throughput           : %.2f archivos/s%n", rate);
+        System.out.println(XPathRegistry.stats());
+        System.out.println(StageMetrics.summary());
+        for (String f : failures) System.out.println("  ✗ " + f);
+        System.out.println("===============================================");
+    }
+}
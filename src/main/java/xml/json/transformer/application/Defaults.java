@@ -10,6 +10,7 @@ public final class Defaults {
     public static final String COD_PAIS_ORIGEN = "170";
     public static final String COD_ZONA_TERRITORIAL = "02";
     public static final Integer CONSECUTIVO = 1;
+    public static final String TIPO_DOCUMENTO = "CC";
 
     public static final String TIPO_OS = "02";
     public static final String CONCEPTO_RECAUDO = "03";
@@ -0,0 +1,177 @@
+package xml.json.transformer.application;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Escáner de bytes (sobre un {@code FileChannel} mapeado en memoria) que localiza el contenido de cada
+ * elemento {@code *:Description} del archivo original, en orden de documento.
+ * <p>
+ * No es un parser XML completo: reconoce etiquetas, comentarios, CDATA, PIs y DOCTYPE lo suficiente
+ * para no confundir texto con marcado. Sólo admite archivos UTF-8 (o sin declaración de encoding).
+ */
+final class DescriptionRangeScanner {
+
+    /** Contenido de un {@code Description}: bytes [start, end) entre la etiqueta de apertura y la de cierre. */
+    static final class Range {
+        final String qName;
+        final long start;
+        final long end;
+
+        Range(String qName, long start, long end) {
+            this.qName = qName;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private DescriptionRangeScanner() {}
+
+    /** @return los rangos, o null si el archivo no es UTF-8 o no se pudo recorrer. */
+    static List<Range> scan(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) return null;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new Scan(buf, (int) size).run();
+        }
+    }
+
+    private static final class Scan {
+        private final MappedByteBuffer b;
+        private final int n;
+        private int p;
+
+        Scan(MappedByteBuffer b, int n) {
+            this.b = b;
+            this.n = n;
+        }
+
+        List<Range> run() {
+            List<Range> out = new ArrayList<>();
+            String openName = null; // Description abierto
+            long openStart = -1;
+            int nested = 0;         // elementos con el mismo nombre anidados dentro del abierto
+
+            while (p < n) {
+                if (b.get(p) != '<') { p++; continue; }
+                int tagStart = p;
+                if (startsWith("<!--")) {
+                    if (!skipPast("-->")) return null;
+                } else if (startsWith("<![CDATA[")) {
+                    if (!skipPast("]]>")) return null;
+                } else if (startsWith("<?")) {
+                    int declEnd = indexOf("?>", p);
+                    if (declEnd < 0) return null;
+                    if (startsWith("<?xml ") && !isUtf8Declaration(tagStart, declEnd)) return null;
+                    p = declEnd + 2;
+                } else if (startsWith("<!")) {
+                    if (!skipDoctype()) return null;
+                } else if (startsWith("</")) {
+                    p += 2;
+                    String name = readName();
+                    if (!skipPast(">")) return null;
+                    if (openName != null && openName.equals(name)) {
+                        if (nested == 0) {
+                            out.add(new Range(openName, openStart, tagStart));
+                            openName = null;
+                        } else {
+                            nested--;
+                        }
+                    }
+                } else {
+                    p++;
+                    String name = readName();
+                    boolean selfClosing = skipTagBody();
+                    if (p < 0) return null;
+                    if (selfClosing) continue;
+                    if (openName != null) {
+                        if (openName.equals(name)) nested++;
+                    } else if (name.equals("Description") || name.endsWith(":Description")) {
+                        openName = name;
+                        openStart = p;
+                        nested = 0;
+                    }
+                }
+            }
+            return openName == null ? out : null;
+        }
+
+        private boolean startsWith(String s) {
+            if (p + s.length() > n) return false;
+            for (int i = 0; i < s.length(); i++) if (b.get(p + i) != s.charAt(i)) return false;
+            return true;
+        }
+
+        private int indexOf(String s, int from) {
+            outer:
+            for (int i = from; i + s.length() <= n; i++) {
+                for (int j = 0; j < s.length(); j++) if (b.get(i + j) != s.charAt(j)) continue outer;
+                return i;
+            }
+            return -1;
+        }
+
+        private boolean skipPast(String s) {
+            int i = indexOf(s, p);
+            if (i < 0) return false;
+            p = i + s.length();
+            return true;
+        }
+
+        private String readName() {
+            int s = p;
+            while (p < n) {
+                byte c = b.get(p);
+                if (c == '>' || c == '/' || c == ' ' || c == '\t' || c == '\r' || c == '\n') break;
+                p++;
+            }
+            byte[] name = new byte[p - s];
+            for (int i = 0; i < name.length; i++) name[i] = b.get(s + i);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        /** Avanza hasta después del '>' respetando comillas. Devuelve true si la etiqueta era {@code />}. */
+        private boolean skipTagBody() {
+            byte quote = 0;
+            while (p < n) {
+                byte c = b.get(p++);
+                if (quote != 0) {
+                    if (c == quote) quote = 0;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '>') {
+                    return b.get(p - 2) == '/';
+                }
+            }
+            p = -1;
+            return false;
+        }
+
+        private boolean skipDoctype() {
+            int depth = 0;
+            while (p < n) {
+                byte c = b.get(p++);
+                if (c == '[') depth++;
+                else if (c == ']') depth--;
+                else if (c == '>' && depth == 0) return true;
+            }
+            return false;
+        }
+
+        private boolean isUtf8Declaration(int from, int to) {
+            byte[] decl = new byte[to - from];
+            for (int i = 0; i < decl.length; i++) decl[i] = b.get(from + i);
+            String s = new String(decl, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+            int i = s.indexOf("encoding");
+            return i < 0 || s.indexOf("utf-8", i) > 0;
+        }
+    }
+}
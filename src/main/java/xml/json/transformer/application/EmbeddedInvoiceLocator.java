@@ -0,0 +1,140 @@
+package xml.json.transformer.application;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Recorre el AttachedDocument con StAX, sin construir el DOM externo, y entrega cada contenido de
+ * {@code cbc:Description} que sea XML embebido junto con los pocos campos externos que usa el flujo
+ * (IssueDate, ParentDocumentID, CompanyID schemeID=8 y CompanyID del receptor/cliente).
+ * <p>
+ * La memoria usada es constante respecto al tamaño del archivo salvo el payload que se está entregando.
+ */
+public final class EmbeddedInvoiceLocator {
+
+    private static final String CBC = XPathRegistry.NS.get("cbc");
+    private static final String CAC = XPathRegistry.NS.get("cac");
+
+    /** Campos del documento externo (vacíos si no se encontraron). */
+    public static final class OuterFields {
+        public String issueDate = "";
+        public String parentDocumentId = "";
+        public String nitObligado = "";           // //cbc:CompanyID[@schemeID='8']
+        public String receiverCompanyId = "";     // //cac:ReceiverParty//cac:PartyTaxScheme//cbc:CompanyID
+        public String customerCompanyId = "";     // //cac:AccountingCustomerParty//cac:PartyTaxScheme//cbc:CompanyID
+        public int descriptionCount;
+    }
+
+    /** Recibe cada payload embebido; {@code descriptionIndex} cuenta todos los {@code *:Description} en orden. */
+    public interface PayloadVisitor {
+        void payload(int descriptionIndex, String payload) throws Exception;
+    }
+
+    private EmbeddedInvoiceLocator() {}
+
+    public static OuterFields locate(Path file, PayloadVisitor visitor) throws Exception {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            XMLStreamReader r = XmlPools.staxInputFactory().createXMLStreamReader(in);
+            try {
+                return scan(r, visitor);
+            } finally {
+                r.close();
+            }
+        }
+    }
+
+    // Campos capturados mientras su elemento está abierto
+    private static final int ISSUE_DATE = 0, PARENT_ID = 1, NIT = 2, RECEIVER = 3, CUSTOMER = 4, DESCRIPTION = 5;
+
+    private static OuterFields scan(XMLStreamReader r, PayloadVisitor visitor) throws Exception {
+        OuterFields f = new OuterFields();
+        StringBuilder[] text = new StringBuilder[6];
+        int[] openDepth = {-1, -1, -1, -1, -1, -1};
+        boolean[] found = new boolean[5];
+        int depth = 0;
+        int receiverDepth = 0, customerDepth = 0, taxSchemeDepth = 0; // ancestros abiertos
+        boolean descriptionIsCbc = false;
+
+        while (r.hasNext()) {
+            int ev = r.next();
+            if (ev == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String local = r.getLocalName();
+                String ns = r.getNamespaceURI();
+                if (CAC.equals(ns)) {
+                    if ("ReceiverParty".equals(local)) receiverDepth++;
+                    else if ("AccountingCustomerParty".equals(local)) customerDepth++;
+                    else if ("PartyTaxScheme".equals(local)) taxSchemeDepth++;
+                }
+                switch (local) {
+                    case "IssueDate" -> open(ISSUE_DATE, depth, found, text, openDepth);
+                    case "ParentDocumentID" -> open(PARENT_ID, depth, found, text, openDepth);
+                    case "CompanyID" -> {
+                        if (CBC.equals(ns)) {
+                            if ("8".equals(r.getAttributeValue(null, "schemeID"))) open(NIT, depth, found, text, openDepth);
+                            if (receiverDepth > 0 && taxSchemeDepth > 0) open(RECEIVER, depth, found, text, openDepth);
+                            if (customerDepth > 0 && taxSchemeDepth > 0) open(CUSTOMER, depth, found, text, openDepth);
+                        }
+                    }
+                    case "Description" -> {
+                        if (openDepth[DESCRIPTION] < 0) {
+                            openDepth[DESCRIPTION] = depth;
+                            text[DESCRIPTION] = new StringBuilder();
+                            descriptionIsCbc = CBC.equals(ns);
+                        }
+                    }
+                    default -> { }
+                }
+            } else if (ev == XMLStreamConstants.CHARACTERS || ev == XMLStreamConstants.CDATA
+                    || ev == XMLStreamConstants.SPACE) {
+                for (int i = 0; i < text.length; i++) {
+                    if (openDepth[i] >= 0) text[i].append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+                }
+            } else if (ev == XMLStreamConstants.END_ELEMENT) {
+                for (int i = 0; i < text.length; i++) {
+                    if (openDepth[i] != depth) continue;
+                    String value = text[i].toString();
+                    text[i] = null;
+                    openDepth[i] = -1;
+                    if (i == DESCRIPTION) {
+                        int index = f.descriptionCount++;
+                        String trimmed = value.trim();
+                        if (descriptionIsCbc && trimmed.startsWith("<")) visitor.payload(index, trimmed);
+                    } else {
+                        found[i] = true;
+                        set(f, i, value.trim());
+                    }
+                }
+                String local = r.getLocalName();
+                if (CAC.equals(r.getNamespaceURI())) {
+                    if ("ReceiverParty".equals(local)) receiverDepth--;
+                    else if ("AccountingCustomerParty".equals(local)) customerDepth--;
+                    else if ("PartyTaxScheme".equals(local)) taxSchemeDepth--;
+                }
+                depth--;
+            }
+        }
+        return f;
+    }
+
+    private static void open(int field, int depth, boolean[] found, StringBuilder[] text, int[] openDepth) {
+        if (found[field] || openDepth[field] >= 0) return;
+        openDepth[field] = depth;
+        text[field] = new StringBuilder();
+    }
+
+    private static void set(OuterFields f, int field, String value) {
+        switch (field) {
+            case ISSUE_DATE -> f.issueDate = value;
+            case PARENT_ID -> f.parentDocumentId = value;
+            case NIT -> f.nitObligado = value;
+            case RECEIVER -> f.receiverCompanyId = value;
+            case CUSTOMER -> f.customerCompanyId = value;
+            default -> { }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package xml.json.transformer.application;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Respuestas del cuestionario leídas de archivos, para procesar sin intervención:
+ * <ul>
+ *   <li><b>Sidecar</b> ({@link #sidecars}): un archivo por factura en un directorio,
+ *       {@code <ParentDocumentID>.json} (un objeto) o {@code <ParentDocumentID>.csv} (encabezado + una fila).</li>
+ *   <li><b>Masivo</b> ({@link #bulk}): un solo archivo para todo el batch; JSON (arreglo de objetos con
+ *       {@code parentDocumentId}, u objeto cuyas claves son el ParentDocumentID) o CSV con columna
+ *       {@code parentDocumentId}.</li>
+ * </ul>
+ * Las claves/columnas son los campos de {@link Answers}; los vacíos toman los valores por defecto del formulario.
+ * El CSV acepta {@code ,} o {@code ;} como separador (el que traiga el encabezado) y comillas dobles.
+ */
+public final class FileAnswerProvider implements AnswerProvider {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final Path sidecarDir;
+    private final Map<String, ObjectNode> bulk;
+    private final String source;
+
+    private FileAnswerProvider(Path sidecarDir, Map<String, ObjectNode> bulk, String source) {
+        this.sidecarDir = sidecarDir;
+        this.bulk = bulk;
+        this.source = source;
+    }
+
+    /** Directorio → sidecars; archivo → respuestas masivas. */
+    public static FileAnswerProvider forPath(Path path) throws IOException {
+        return Files.isDirectory(path) ? sidecars(path) : bulk(path);
+    }
+
+    public static FileAnswerProvider sidecars(Path dir) {
+        return new FileAnswerProvider(dir, null, dir.toString());
+    }
+
+    /** Carga el archivo completo una vez; después las búsquedas son por clave, desde cualquier hilo. */
+    public static FileAnswerProvider bulk(Path file) throws IOException {
+        List<ObjectNode> rows;
+        if (isCsv(file)) {
+            rows = readCsv(file);
+        } else {
+            JsonNode root = MAPPER.readTree(file.toFile());
+            rows = new ArrayList<>();
+            if (root.isArray()) {
+                for (JsonNode n : root) rows.add(asObject(n, file));
+            } else if (root.isObject()) {
+                for (Iterator<Map.Entry<String, JsonNode>> it = root.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> e = it.next();
+                    ObjectNode row = asObject(e.getValue(), file);
+                    if (!row.hasNonNull("parentDocumentId")) row.put("parentDocumentId", e.getKey());
+                    rows.add(row);
+                }
+            } else {
+                throw new IllegalArgumentException("❌ " + file + ": se esperaba un arreglo u objeto JSON.");
+            }
+        }
+
+        Map<String, ObjectNode> byFactura = new HashMap<>(rows.size() * 4 / 3 + 1);
+        for (ObjectNode row : rows) {
+            String key = row.path("parentDocumentId").asText("").trim();
+            if (key.isEmpty()) {
+                throw new IllegalArgumentException("❌ " + file + ": hay respuestas sin parentDocumentId.");
+            }
+            if (byFactura.put(key, row) != null) {
+                throw new IllegalArgumentException("❌ " + file + ": respuestas repetidas para " + key + ".");
+            }
+        }
+        System.out.println("📋 Respuestas cargadas: " + byFactura.size() + " facturas desde " + file);
+        return new FileAnswerProvider(null, byFactura, file.toString());
+    }
+
+    @Override
+    public Answers answersFor(PrefillFields xml, LocalDate issueDate) throws IOException {
+        String factura = xml.parentDocumentId == null ? "" : xml.parentDocumentId.trim();
+        ObjectNode row = bulk != null ? bulk.get(factura) : readSidecar(factura);
+        if (row == null) {
+            throw new IllegalStateException("❌ No hay respuestas para la factura " + factura + " en " + source + ".");
+        }
+        try {
+            // Copia nueva en cada llamada: applyDefaults/validate modifican las respuestas
+            return MAPPER.treeToValue(row, Answers.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("❌ Respuestas inválidas para " + factura + ": " + e.getOriginalMessage());
+        }
+    }
+
+    /** SHA-256 de las respuestas de la factura (la fila, o el archivo sidecar tal cual); null si no hay. */
+    @Override
+    public String fingerprint(String parentDocumentId) throws IOException {
+        String factura = parentDocumentId == null ? "" : parentDocumentId.trim();
+        if (bulk != null) {
+            ObjectNode row = bulk.get(factura);
+            return row == null ? null : ProcessingManifest.sha256(MAPPER.writeValueAsBytes(row));
+        }
+        if (factura.isEmpty()) return null;
+        for (String ext : new String[]{".json", ".csv"}) {
+            Path p = sidecar(factura, ext);
+            if (Files.isRegularFile(p)) return ProcessingManifest.sha256(p);
+        }
+        return null;
+    }
+
+    private ObjectNode readSidecar(String factura) throws IOException {
+        if (factura.isEmpty()) return null;
+        Path json = sidecar(factura, ".json");
+        if (Files.isRegularFile(json)) return asObject(MAPPER.readTree(json.toFile()), json);
+        Path csv = sidecar(factura, ".csv");
+        if (Files.isRegularFile(csv)) {
+            List<ObjectNode> rows = readCsv(csv);
+            if (rows.size() != 1) {
+                throw new IllegalArgumentException("❌ " + csv + ": se esperaba una sola fila de respuestas.");
+            }
+            return rows.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * {@code <sidecarDir>/<factura><ext>}. El ParentDocumentID viene del XML: si trae separadores o {@code ..}
+     * no se usa como nombre de archivo, para no leer respuestas fuera del directorio.
+     */
+    private Path sidecar(String factura, String ext) {
+        Path dir = sidecarDir.toAbsolutePath().normalize();
+        Path p = dir.resolve(factura + ext).normalize();
+        if (factura.indexOf('/') >= 0 || factura.indexOf('\\') >= 0 || !dir.equals(p.getParent())) {
+            throw new IllegalArgumentException("❌ ParentDocumentID no válido como nombre de archivo de respuestas: "
+                    + factura);
+        }
+        return p;
+    }
+
+    private static ObjectNode asObject(JsonNode n, Path file) {
+        if (!(n instanceof ObjectNode)) {
+            throw new IllegalArgumentException("❌ " + file + ": cada respuesta debe ser un objeto JSON.");
+        }
+        return (ObjectNode) n;
+    }
+
+    // ------------------------------------------------------------------
+    // CSV
+    // ------------------------------------------------------------------
+    private static boolean isCsv(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+
+    static List<ObjectNode> readCsv(Path file) throws IOException {
+        List<ObjectNode> rows = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String headerLine = in.readLine();
+            if (headerLine == null) return rows;
+            if (headerLine.startsWith("﻿")) headerLine = headerLine.substring(1);
+            char sep = headerLine.indexOf(';') >= 0 && headerLine.indexOf(',') < 0 ? ';' : ',';
+            List<String> header = splitCsv(headerLine, sep, in);
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                List<String> cells = splitCsv(line, sep, in);
+                ObjectNode row = MAPPER.createObjectNode();
+                for (int i = 0; i < header.size() && i < cells.size(); i++) {
+                    String v = cells.get(i).trim();
+                    if (!v.isEmpty()) row.put(header.get(i).trim(), v);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /** Separa una línea CSV; un campo entre comillas puede contener el separador, {@code ""} y saltos de línea. */
+    private static List<String> splitCsv(String line, char sep, BufferedReader in) throws IOException {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char ch = line.charAt(i);
+                if (quoted) {
+                    if (ch == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            cur.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        cur.append(ch);
+                    }
+                } else if (ch == '"') {
+                    quoted = true;
+                } else if (ch == sep) {
+                    cells.add(cur.toString());
+                    cur.setLength(0);
+                } else {
+                    cur.append(ch);
+                }
+            }
+            if (!quoted) break;
+            String next = in.readLine();
+            if (next == null) break;
+            cur.append('\n');
+            line = next;
+        }
+        cells.add(cur.toString());
+        return cells;
+    }
+}
@@ -0,0 +1,243 @@
+package xml.json.transformer.application;
+
+import javax.xml.XMLConstants;
+import java.util.Arrays;
+
+/**
+ * Texto de salida del Invoice embebido, común a {@link InnerXmlWriter} (desde DOM) y a {@link StaxInvoiceRewriter}
+ * (desde eventos StAX): con los mismos escapes, la misma corrección de namespaces y el mismo descarte de líneas en
+ * blanco, los dos motores producen el mismo texto. Quien lo usa decide la estructura (saltos e indentación).
+ * <p>
+ * No es thread-safe: cada hilo usa su propia instancia y la reutiliza entre documentos.
+ */
+final class InnerXmlOutput {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+    /** Por encima de esto el buffer no se conserva para el siguiente documento del hilo. */
+    private static final int MAX_RETAINED_CHARS = 4 * 1024 * 1024;
+
+    private StringBuilder out = new StringBuilder(16 * 1024);
+    /** Posición del último salto de línea y del último carácter no blanco: bastan para quitar líneas en blanco. */
+    private int lastNewline;
+    private int lastNonBlank;
+
+    // Namespaces en alcance: pila de (prefijo, URI); cada elemento recuerda dónde empezaba la suya
+    private String[] nsPrefixes = new String[32];
+    private String[] nsUris = new String[32];
+    private int nsSize;
+
+    /** Empieza un documento: salto inicial, declaración XML y salto. */
+    void begin() {
+        out.append('\n');
+        lastNewline = 0;
+        lastNonBlank = -1;
+        markup(XML_DECLARATION);
+        newline();
+    }
+
+    /** Termina el documento: sin blancos al final y con un salto de línea. */
+    String finish() {
+        int end = out.length();
+        while (end > 0 && isBlank(out.charAt(end - 1))) end--;
+        out.setLength(end);
+        out.append('\n');
+        return out.toString();
+    }
+
+    /** Deja la instancia lista para el siguiente documento del hilo (haya terminado bien o no). */
+    void reset() {
+        if (out.capacity() > MAX_RETAINED_CHARS) out = new StringBuilder(16 * 1024);
+        else out.setLength(0);
+        endScope(0);
+    }
+
+    // ------------------------------------------------------------------
+    // Nodos
+    // ------------------------------------------------------------------
+
+    void startTag(String qname) {
+        markup("<");
+        markup(qname);
+    }
+
+    void closeTag(String qname) {
+        markup("</");
+        markup(qname);
+        markup(">");
+    }
+
+    void comment(String comment) {
+        markup("<!--");
+        content(comment, 0, comment.length());
+        markup("-->");
+    }
+
+    void processingInstruction(String target, String data) {
+        markup("<?");
+        markup(target);
+        if (data != null && !data.isEmpty()) {
+            out.append(' ');
+            content(data, 0, data.length());
+        }
+        markup("?>");
+    }
+
+    // ------------------------------------------------------------------
+    // Namespaces
+    // ------------------------------------------------------------------
+
+    /** Inicio del alcance de un elemento: se pasa a {@link #endScope} al cerrarlo. */
+    int scope() {
+        return nsSize;
+    }
+
+    void endScope(int scope) {
+        for (int i = scope; i < nsSize; i++) {
+            nsPrefixes[i] = null;
+            nsUris[i] = null;
+        }
+        nsSize = scope;
+    }
+
+    /**
+     * Escribe {@code xmlns[:prefix]="uri"} salvo que ese prefijo ya tenga ese URI en alcance. El prefijo es
+     * {@code name[from, to)} (vacío si {@code from == to}): sólo se copia cuando hay que declararlo.
+     */
+    void declare(String name, int from, int to, String uri) {
+        if (uri.equals(lookup(name, from, to))) return;
+        String prefix = name.substring(from, to);
+        if (nsSize == nsPrefixes.length) {
+            nsPrefixes = Arrays.copyOf(nsPrefixes, nsSize * 2);
+            nsUris = Arrays.copyOf(nsUris, nsSize * 2);
+        }
+        nsPrefixes[nsSize] = prefix;
+        nsUris[nsSize] = uri;
+        nsSize++;
+        attribute(prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, uri);
+    }
+
+    private String lookup(String name, int from, int to) {
+        int len = to - from;
+        for (int i = nsSize - 1; i >= 0; i--) {
+            String p = nsPrefixes[i];
+            if (p.length() == len && name.regionMatches(from, p, 0, len)) return nsUris[i];
+        }
+        if (len == 0) return "";
+        return len == 3 && name.startsWith(XMLConstants.XML_NS_PREFIX, from) ? XMLConstants.XML_NS_URI : null;
+    }
+
+    // ------------------------------------------------------------------
+    // Escritura y escapes
+    // ------------------------------------------------------------------
+
+    void attribute(String name, String value) {
+        out.append(' ');
+        markup(name);
+        out.append("=\"");
+        for (int i = 0, len = value.length(); i < len; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\n' -> out.append("&#10;");
+                case '\r' -> out.append("&#13;");
+                case '\t' -> out.append("&#9;");
+                default -> {
+                    if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        charRef(Character.toCodePoint(c, value.charAt(++i)));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        markup("\"");
+    }
+
+    void text(String s) {
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&' -> markup("&amp;");
+                case '<' -> markup("&lt;");
+                case '>' -> markup("&gt;");
+                case '\r' -> markup("&#13;");
+                case '\n' -> newline();
+                default -> {
+                    if (c >= 0x7F && c <= 0x9F) {
+                        charRef(c);
+                    } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        charRef(Character.toCodePoint(c, s.charAt(++i)));
+                    } else {
+                        plain(c);
+                    }
+                }
+            }
+        }
+    }
+
+    void cdata(String s) {
+        markup("<![CDATA[");
+        int from = 0;
+        for (int end; (end = s.indexOf("]]>", from)) >= 0; from = end + 2) {
+            content(s, from, end + 2);
+            markup("]]><![CDATA[");
+        }
+        content(s, from, s.length());
+        markup("]]>");
+    }
+
+    /** Texto sin escapes (comentarios, PI, CDATA); los saltos siguen quitando líneas en blanco. */
+    private void content(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '\n') newline();
+            else plain(c);
+        }
+    }
+
+    private void charRef(int codePoint) {
+        out.append("&#").append(codePoint);
+        markup(";");
+    }
+
+    private void plain(char c) {
+        out.append(c);
+        if (!isBlank(c)) lastNonBlank = out.length() - 1;
+    }
+
+    /** Marcado: siempre termina en un carácter no blanco. */
+    void markup(String s) {
+        out.append(s);
+        lastNonBlank = out.length() - 1;
+    }
+
+    void indent(int depth) {
+        for (int i = 0; i < depth; i++) out.append("  ");
+    }
+
+    /** Salto de línea; si la línea actual quedó en blanco se descarta en lugar de agregar otra. */
+    void newline() {
+        if (lastNonBlank < lastNewline) {
+            out.setLength(lastNewline + 1);
+            return;
+        }
+        out.append('\n');
+        lastNewline = out.length() - 1;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\u000B' || c == '\f';
+    }
+
+    /** Texto en blanco tal como lo omite la indentación: sólo espacios, tabuladores y saltos. */
+    static boolean isBlank(String s) {
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n') return false;
+        }
+        return true;
+    }
+}
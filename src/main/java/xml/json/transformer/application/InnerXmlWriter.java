@@ -0,0 +1,125 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+
+/**
+ * Serializador del Invoice embebido ya transformado: recorre el DOM una vez y escribe el texto final
+ * en un {@link StringBuilder} reutilizado por hilo.
+ * <p>
+ * Produce lo mismo que el {@code Transformer} con indentación de {@link XmlPools} seguido de
+ * {@code replaceAll("\\n\\s*\\n", "\n").trim()}, sin pasar por esa copia intermedia ni por la expresión regular:
+ * <ul>
+ *   <li>Declaración {@code <?xml version="1.0" encoding="UTF-8" standalone="no"?>} y un salto de línea.</li>
+ *   <li>Un elemento con hijos elemento, comentario o PI pone cada hijo en su línea con 2 espacios por nivel;
+ *       los textos en blanco entre ellos no aparecen. Si sólo tiene texto/CDATA, se escribe en línea.</li>
+ *   <li>Las líneas en blanco se quitan al escribir cada salto (también dentro de textos y comentarios, como hacía
+ *       la expresión regular).</li>
+ *   <li>Mismos escapes y la misma corrección de namespaces que el serializador del JDK: primero los
+ *       {@code xmlns} del elemento, luego los atributos y al final la declaración que falte para su prefijo;
+ *       las declaraciones repetidas con el mismo URI se omiten.</li>
+ * </ul>
+ * El texto devuelto lleva un salto de línea al inicio y al final, listo para {@code cbc:Description}. Escapes,
+ * namespaces y líneas en blanco están en {@link InnerXmlOutput}, compartido con el motor STAX.
+ */
+final class InnerXmlWriter {
+
+    private static final ThreadLocal<InnerXmlWriter> WRITER = ThreadLocal.withInitial(InnerXmlWriter::new);
+
+    private final InnerXmlOutput out = new InnerXmlOutput();
+
+    private InnerXmlWriter() {}
+
+    /** Texto del documento con la indentación y sin líneas en blanco, rodeado de {@code \n}. */
+    static String write(Document doc) {
+        InnerXmlWriter w = WRITER.get();
+        try {
+            return w.document(doc);
+        } finally {
+            w.out.reset();
+        }
+    }
+
+    private String document(Document doc) {
+        out.begin();
+        for (Node n = doc.getFirstChild(); n != null; n = n.getNextSibling()) {
+            child(n, 0);
+        }
+        return out.finish();
+    }
+
+    private void child(Node n, int depth) {
+        switch (n.getNodeType()) {
+            case Node.ELEMENT_NODE -> element((Element) n, depth);
+            case Node.TEXT_NODE -> out.text(n.getNodeValue());
+            case Node.CDATA_SECTION_NODE -> out.cdata(n.getNodeValue());
+            case Node.COMMENT_NODE -> out.comment(n.getNodeValue());
+            case Node.PROCESSING_INSTRUCTION_NODE -> out.processingInstruction(n.getNodeName(), n.getNodeValue());
+            default -> { /* DOCTYPE y otros: no aparecen en el Invoice embebido */ }
+        }
+    }
+
+    private void element(Element e, int depth) {
+        int scope = out.scope();
+        String qname = e.getTagName();
+        out.startTag(qname);
+
+        NamedNodeMap attrs = e.getAttributes();
+        int count = attrs.getLength();
+        for (int i = 0; i < count; i++) {
+            Attr a = (Attr) attrs.item(i);
+            String name = a.getName();
+            if (name.equals("xmlns")) out.declare(name, 0, 0, a.getValue());
+            else if (name.startsWith("xmlns:")) out.declare(name, 6, name.length(), a.getValue());
+        }
+        for (int i = 0; i < count; i++) {
+            Attr a = (Attr) attrs.item(i);
+            String name = a.getName();
+            if (name.equals("xmlns") || name.startsWith("xmlns:")) continue;
+            String uri = a.getNamespaceURI();
+            int colon = name.indexOf(':');
+            if (uri != null && !uri.isEmpty() && colon > 0) out.declare(name, 0, colon, uri);
+            out.attribute(name, a.getValue());
+        }
+        String uri = e.getNamespaceURI();
+        if (uri != null) {
+            int colon = qname.indexOf(':');
+            out.declare(qname, 0, Math.max(colon, 0), uri);
+        } else if (e.getLocalName() != null) {
+            out.declare(qname, 0, 0, ""); // sin namespace bajo un xmlns por defecto: se anula
+        }
+
+        Node first = e.getFirstChild();
+        if (first == null) {
+            out.markup("/>");
+        } else if (!hasStructuredChildren(e)) {
+            out.markup(">");
+            for (Node n = first; n != null; n = n.getNextSibling()) child(n, depth + 1);
+            out.closeTag(qname);
+        } else {
+            out.markup(">");
+            for (Node n = first; n != null; n = n.getNextSibling()) {
+                if (n.getNodeType() == Node.TEXT_NODE && InnerXmlOutput.isBlank(n.getNodeValue())) continue;
+                out.newline();
+                out.indent(depth + 1);
+                child(n, depth + 1);
+            }
+            out.newline();
+            out.indent(depth);
+            out.closeTag(qname);
+        }
+        out.endScope(scope);
+    }
+
+    private static boolean hasStructuredChildren(Element e) {
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            short t = n.getNodeType();
+            if (t == Node.ELEMENT_NODE || t == Node.COMMENT_NODE || t == Node.PROCESSING_INSTRUCTION_NODE) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,33 @@
+package xml.json.transformer.application;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+/** Fechas del bloque {@code <cac:InvoicePeriod>} (paso F) a partir de fechaSuministro (yyyy-MM-dd HH:mm). */
+final class InvoicePeriod {
+
+    static final String TIME = "00:00:00-05:00";
+
+    final String startDate; // día anterior al suministro
+    final String endDate;   // mismo día del suministro
+
+    private InvoicePeriod(String startDate, String endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    static InvoicePeriod from(String fechaSuministro) throws ParseException {
+        SimpleDateFormat sdfInput = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(sdfInput.parse(fechaSuministro));
+
+        // StartDate = día anterior
+        cal.add(Calendar.DATE, -1);
+        String startDate = new SimpleDateFormat("yyyy-MM-dd").format(cal.getTime());
+
+        // EndDate = mismo día del suministro
+        String endDate = fechaSuministro.substring(0, 10);
+        return new InvoicePeriod(startDate, endDate);
+    }
+}
@@ -0,0 +1,362 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Document;
+import xml.json.transformer.domain.InvoiceData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Flujo completo para UN archivo AttachedDocument:
+ * leer → cuestionario/JSON → transformaciones → escribir {@code <factura>/<factura>.xml|.json}.
+ * Lo usan tanto la UI ({@code Main.runFlow}) como el modo batch.
+ */
+public class InvoiceProcessor {
+
+    /** Resultado de procesar un archivo. */
+    public static final class Result {
+        public final String factura;
+        public final Path outDir;
+        public final Path outXml;
+        public final Path outJson;
+        /** El JSON generado, para quien necesite consolidarlo (batch {@code --consolidate}); null si se omitió. */
+        public final InvoiceData data;
+        /** true si el manifiesto indicó que la salida existente está al día y no se procesó de nuevo. */
+        public final boolean skipped;
+
+        Result(String factura, Path outDir, Path outXml, Path outJson, InvoiceData data) {
+            this(factura, outDir, outXml, outJson, data, false);
+        }
+
+        private Result(String factura, Path outDir, Path outXml, Path outJson, InvoiceData data, boolean skipped) {
+            this.factura = factura;
+            this.outDir = outDir;
+            this.outXml = outXml;
+            this.outJson = outJson;
+            this.data = data;
+            this.skipped = skipped;
+        }
+    }
+
+    /** Avance del procesamiento de un archivo (para la barra de progreso de la interfaz). */
+    @FunctionalInterface
+    public interface Progress {
+        Progress NONE = (percent, step) -> {};
+
+        /** Se llama desde el hilo que procesa, al empezar cada paso. */
+        void update(int percent, String step);
+    }
+
+    /**
+     * Carpetas {@code outRoot/<factura>} que algún hilo está escribiendo. Dos entradas con el mismo
+     * ParentDocumentID (batch con varios hilos, modo watch) escriben una después de la otra y no se mezclan;
+     * la segunda reemplaza a la primera, como en un procesamiento secuencial.
+     */
+    private static final Map<Path, CountDownLatch> WRITING = new ConcurrentHashMap<>();
+
+    /** Lo que debe quedar hecho mientras se tiene la carpeta de la factura (p. ej. registrar en el manifiesto). */
+    @FunctionalInterface
+    private interface Written {
+        Written NONE = r -> {};
+
+        void accept(Result r) throws IOException;
+    }
+
+    private final XmlAdapterService xmlService;
+    private final boolean streaming;
+    private final AnswerProvider answers;
+    private Progress progress = Progress.NONE;
+
+    /** Usa el modo streaming si {@code -Dxmlt.streaming=true}. */
+    public InvoiceProcessor(XmlAdapterService xmlService) {
+        this(xmlService, Boolean.getBoolean("xmlt.streaming"));
+    }
+
+    public InvoiceProcessor(XmlAdapterService xmlService, boolean streaming) {
+        this(xmlService, streaming, new SwingAnswerProvider());
+    }
+
+    /**
+     * @param streaming si es true, el documento externo no se carga como DOM: los campos y los Invoice
+     *                  embebidos se leen con {@link EmbeddedInvoiceLocator} y la salida se escribe por empalme.
+     * @param answers   origen de las respuestas del cuestionario (formulario Swing o archivos).
+     */
+    public InvoiceProcessor(XmlAdapterService xmlService, boolean streaming, AnswerProvider answers) {
+        this.xmlService = xmlService;
+        this.streaming = streaming;
+        this.answers = answers;
+    }
+
+    /**
+     * Informa el avance a {@code progress}. Si el hilo que procesa es interrumpido (p. ej. el botón Cancelar),
+     * el procesamiento se detiene con {@link CancellationException} al empezar el paso siguiente.
+     */
+    public void setProgress(Progress progress) {
+        this.progress = progress == null ? Progress.NONE : progress;
+    }
+
+    private void step(int percent, String step) {
+        progress.update(percent, step);
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("⛔ Proceso cancelado por el usuario.");
+        }
+    }
+
+    /**
+     * Como {@link #process(File, Path)}, pero omite el archivo si {@code manifest} dice que su salida está al día
+     * (mismo contenido, motor y respuestas) y registra en él cada procesamiento exitoso.
+     *
+     * @param manifest null para procesar siempre, sin registrar.
+     * @param force    procesar aunque el manifiesto indique que no hace falta.
+     */
+    public Result process(File inputFile, Path outRoot, ProcessingManifest manifest, boolean force) throws Exception {
+        if (manifest == null) return process(inputFile, outRoot);
+
+        Path input = inputFile.toPath();
+        step(0, "Verificando cambios");
+        String sha256 = ProcessingManifest.sha256(input);
+        String engineVersion = xmlService.engineVersion();
+        if (!force && manifest.isUpToDate(input, sha256, engineVersion, answers)) {
+            ProcessingManifest.Entry e = manifest.get(input);
+            System.out.println("⏭️ Sin cambios, se omite: " + inputFile.getName() + " (" + e.factura + ")");
+            Path outXml = outRoot.resolve(e.outXml);
+            return new Result(e.factura, outXml.getParent(), outXml, outRoot.resolve(e.outJson), null, true);
+        }
+
+        return process(inputFile, outRoot, r -> manifest.record(input, sha256, engineVersion, answers, r));
+    }
+
+    /**
+     * Procesa {@code inputFile} y deja la salida en {@code outRoot/<factura>/}.
+     *
+     * @return el resultado, o {@code null} si el usuario canceló el cuestionario.
+     * @throws CancellationException    si se interrumpió el hilo (ver {@link #setProgress}).
+     * @throws IllegalStateException    si faltan IssueDate o ParentDocumentID, o no hay respuestas para la factura.
+     * @throws IllegalArgumentException si las respuestas no pasan las validaciones del cuestionario.
+     */
+    public Result process(File inputFile, Path outRoot) throws Exception {
+        return process(inputFile, outRoot, Written.NONE);
+    }
+
+    private Result process(File inputFile, Path outRoot, Written written) throws Exception {
+        StageTimer timer = StageTimer.start();
+        try {
+            Result r = processUntimed(inputFile, outRoot, written);
+            if (r != null) {
+                timer.stop(Stage.INVOICE, null, inputFile.toPath());
+            }
+            return r;
+        } finally {
+            StageEvent.clearFactura();
+        }
+    }
+
+    private Result processUntimed(File inputFile, Path outRoot, Written written) throws Exception {
+        step(5, "Leyendo XML");
+        if (streaming) {
+            List<DescriptionRangeScanner.Range> ranges = DescriptionRangeScanner.scan(inputFile.toPath());
+            if (ranges != null) return processStreaming(inputFile.toPath(), ranges, outRoot, written);
+            System.out.println("ℹ️ El archivo no admite streaming (encoding/estructura); se usa DOM.");
+        }
+
+        // Un solo parseo del archivo y del XML embebido para todo el flujo
+        ParsedInvoice invoice = ParsedInvoice.read(xmlService, inputFile.toPath());
+        Transformed t = transform(invoice, outRoot);
+        if (t == null) return null;
+
+        step(85, "Escribiendo JSON y XML");
+        Result r = new Result(t.factura, t.outDir, t.outXml, t.outJson, t.data);
+        try (Claim ignored = claim(t.outDir)) {
+            xmlService.writeJson(t.data, t.outJson.toString());
+            xmlService.writeXml(invoice, t.xml, t.outXml.toString());
+            written.accept(r);
+        }
+        return r;
+    }
+
+    /** Carpeta de salida tomada por este hilo; se libera al cerrar. */
+    private interface Claim extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** Espera a que ningún otro hilo esté escribiendo {@code outDir} y la toma. */
+    private static Claim claim(Path outDir) {
+        Path key = outDir.toAbsolutePath().normalize();
+        CountDownLatch mine = new CountDownLatch(1);
+        CountDownLatch other;
+        while ((other = WRITING.putIfAbsent(key, mine)) != null) {
+            try {
+                other.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("⛔ Proceso cancelado por el usuario.");
+            }
+        }
+        return () -> {
+            WRITING.remove(key, mine);
+            mine.countDown();
+        };
+    }
+
+    /** JSON y XML transformado de una factura, aún sin escribir. */
+    static final class Transformed {
+        final String factura;
+        final InvoiceData data;
+        final Document xml;
+        final Path outDir;
+        final Path outXml;
+        final Path outJson;
+
+        Transformed(String factura, InvoiceData data, Document xml, Path outDir) {
+            this.factura = factura;
+            this.data = data;
+            this.xml = xml;
+            this.outDir = outDir;
+            this.outXml = outDir == null ? null : outDir.resolve(factura + ".xml");
+            this.outJson = outDir == null ? null : outDir.resolve(factura + ".json");
+        }
+    }
+
+    /**
+     * Núcleo del flujo DOM sobre un documento ya parseado: valida IssueDate/ParentDocumentID, obtiene las
+     * respuestas, arma el JSON y transforma una copia del documento. No escribe archivos; si {@code outRoot}
+     * no es null crea la carpeta {@code outRoot/<factura>}.
+     *
+     * @return null si el usuario canceló el cuestionario.
+     */
+    Transformed transform(ParsedInvoice invoice, Path outRoot) throws Exception {
+        String issueDateStr = invoice.issueDate();
+        if (issueDateStr.isBlank()) {
+            throw new IllegalStateException("❌ No se encontró <cbc:IssueDate>.");
+        }
+        LocalDate issueDate = LocalDate.parse(issueDateStr);
+
+        String factura = invoice.parentDocumentId();
+        if (factura.isBlank()) {
+            throw new IllegalStateException("❌ No se encontró <cbc:ParentDocumentID>.");
+        }
+        StageEvent.setFactura(factura);
+
+        Path outDir = null;
+        if (outRoot != null) {
+            outDir = outRoot.resolve(factura);
+            Files.createDirectories(outDir);
+            System.out.println("📦 Carpeta destino: " + outDir);
+        }
+
+        String codPrestador = invoice.codPrestador();
+        if (codPrestador.isBlank()) {
+            System.err.println("⚠️ No se encontró codPrestador en el XML embebido.");
+        } else {
+            System.out.println("💾 codPrestador: " + codPrestador);
+        }
+
+        step(25, "Cuestionario");
+        System.out.println("📄 Generando JSON (cuestionario)...");
+        JsonBuilderService jsonService = new JsonBuilderService(issueDate, answers);
+        InvoiceData data = jsonService.buildInvoiceData(invoice);
+        if (data == null) {
+            System.out.println("⛔ Operación cancelada por el usuario.");
+            return null;
+        }
+
+        String fechaSuministro = jsonService.getFechaSuministro();
+
+        step(60, "Transformando XML embebido");
+        System.out.println("🛠 Aplicando transformaciones al XML embebido...");
+        Document modifiedDoc = xmlService.applyManualTransformations(invoice, fechaSuministro);
+
+        return new Transformed(factura, data, modifiedDoc, outDir);
+    }
+
+    /**
+     * Flujo sin DOM externo: sólo se retienen en memoria los payloads Invoice (los campos del cuestionario se
+     * leen del texto del primero con {@link PrefillScanner}, sin DOM); el archivo de salida se arma copiando el original y empalmando el contenido.
+     */
+    private Result processStreaming(Path source, List<DescriptionRangeScanner.Range> ranges, Path outRoot,
+                                    Written written) throws Exception {
+        String[] firstPayload = new String[1];
+        Map<Integer, String> invoices = new TreeMap<>();
+        StageTimer readTimer = StageTimer.start();
+        EmbeddedInvoiceLocator.OuterFields outer = EmbeddedInvoiceLocator.locate(source, (index, payload) -> {
+            if (firstPayload[0] == null) firstPayload[0] = payload;
+            if (payload.contains("<Invoice")) invoices.put(index, payload);
+        });
+        StageEvent.setFactura(outer.parentDocumentId);
+        readTimer.stop(Stage.READ_XML, source, invoices.size());
+        if (outer.descriptionCount != ranges.size()) {
+            throw new IllegalStateException("❌ No se pudieron ubicar los <cbc:Description> del archivo.");
+        }
+
+        if (outer.issueDate.isBlank()) {
+            throw new IllegalStateException("❌ No se encontró <cbc:IssueDate>.");
+        }
+        LocalDate issueDate = LocalDate.parse(outer.issueDate);
+
+        String factura = outer.parentDocumentId;
+        if (factura.isBlank()) {
+            throw new IllegalStateException("❌ No se encontró <cbc:ParentDocumentID>.");
+        }
+
+        Path outDir = outRoot.resolve(factura);
+        Files.createDirectories(outDir);
+        Path outXml = outDir.resolve(factura + ".xml");
+        Path outJson = outDir.resolve(factura + ".json");
+        System.out.println("📦 Carpeta destino: " + outDir);
+
+        // Campos del cuestionario leídos del texto del primer payload, sin construir su DOM
+        PrefillScanner.EmbeddedFields prefill = PrefillScanner.embedded(firstPayload[0]);
+        String codPrestador = prefill.codPrestador;
+        if (codPrestador.isBlank()) {
+            System.err.println("⚠️ No se encontró codPrestador en el XML embebido.");
+        } else {
+            System.out.println("💾 codPrestador: " + codPrestador);
+        }
+
+        step(25, "Cuestionario");
+        System.out.println("📄 Generando JSON (cuestionario)...");
+        JsonBuilderService jsonService = new JsonBuilderService(issueDate, answers);
+        InvoiceData data = jsonService.buildInvoiceData(outer, prefill);
+        if (data == null) {
+            System.out.println("⛔ Operación cancelada por el usuario.");
+            return null;
+        }
+
+        String fechaSuministro = jsonService.getFechaSuministro();
+
+        step(60, "Transformando XML embebido");
+        System.out.println("🛠 Aplicando transformaciones al XML embebido (streaming)...");
+        List<Integer> indexes = new ArrayList<>(invoices.keySet());
+        List<String> payloads = new ArrayList<>(invoices.values());
+        List<String> rewritten = xmlService.rewriteAll(payloads, Collections.nCopies(payloads.size(), null), fechaSuministro);
+        Map<Integer, String> replacements = new TreeMap<>();
+        for (int k = 0; k < indexes.size(); k++) replacements.put(indexes.get(k), rewritten.get(k));
+        System.out.println("✅ applyManualTransformations (" + xmlService.getEngine()
+                + (XmlAdapterService.runsInParallel(payloads.size()) ? ", en paralelo" : "")
+                + "): XMLs internos procesados: " + replacements.size());
+
+        step(85, "Escribiendo JSON y XML");
+        Result r = new Result(factura, outDir, outXml, outJson, data);
+        try (Claim ignored = claim(outDir)) {
+            xmlService.writeJson(data, outJson.toString());
+            StageTimer writeTimer = StageTimer.start();
+            SpliceXmlWriter.spliceTexts(source, ranges, replacements, outXml);
+            writeTimer.stop(Stage.WRITE_XML, null, outXml);
+            written.accept(r);
+        }
+        System.out.println("✅ Archivo XML modificado guardado correctamente (empalme): " + outXml);
+        return r;
+    }
+}
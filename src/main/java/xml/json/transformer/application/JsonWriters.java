@@ -0,0 +1,71 @@
+package xml.json.transformer.application;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import xml.json.transformer.domain.InvoiceData;
+import xml.json.transformer.domain.UserData;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Escritores JSON compartidos. Un {@link ObjectWriter} es inmutable y thread-safe, así que se configura
+ * una sola vez (en lugar de un {@code ObjectMapper} nuevo por archivo).
+ * <p>
+ * {@link #writeInvoice} emite {@code InvoiceData} con un {@link JsonGenerator}, serializando los usuarios
+ * uno a uno desde un iterador: un RIPS con miles de {@code UserData} no necesita estar completo en memoria.
+ */
+public final class JsonWriters {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.ALWAYS)
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private static final ObjectWriter PRETTY = MAPPER.writerWithDefaultPrettyPrinter();
+    private static final ObjectWriter COMPACT = MAPPER.writer();
+
+    private JsonWriters() {}
+
+    /** Lee un JSON RIPS ya escrito (p. ej. para consolidar una factura que no se volvió a procesar). */
+    public static InvoiceData readInvoice(Path path) throws IOException {
+        return MAPPER.readValue(path.toFile(), InvoiceData.class);
+    }
+
+    /** Salida con indentación ({@code true}) o compacta. */
+    public static ObjectWriter writer(boolean pretty) {
+        return pretty ? PRETTY : COMPACT;
+    }
+
+    /** Equivale a serializar un {@code InvoiceData} cuyos usuarios son {@code usuarios}, sin materializar la lista. */
+    public static void writeInvoice(InvoiceData header, Iterator<UserData> usuarios, Path path, boolean pretty)
+            throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024)) {
+            writeInvoice(header, usuarios, out, pretty);
+        }
+    }
+
+    public static void writeInvoice(InvoiceData header, Iterator<UserData> usuarios, OutputStream out, boolean pretty)
+            throws IOException {
+        try (JsonGenerator g = writer(pretty).createGenerator(out)) {
+            g.writeStartObject();
+            g.writeStringField("numDocumentoIdObligado", header.numDocumentoIdObligado);
+            g.writeStringField("numFactura", header.numFactura);
+            g.writeStringField("tipoNota", header.tipoNota);
+            g.writeStringField("numNota", header.numNota);
+            g.writeArrayFieldStart("usuarios");
+            while (usuarios.hasNext()) {
+                // ObjectMapper (no ObjectWriter) conserva el PrettyPrinter del generador y su nivel de anidamiento
+                MAPPER.writeValue(g, usuarios.next());
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package xml.json.transformer.application;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias (nanosegundos) sin bloqueos: cubetas logarítmicas con 8 sub-cubetas por potencia de
+ * dos (error relativo ≤ 12,5 %), contadas con incrementos atómicos. Registrar no asigna memoria ni toma locks;
+ * los percentiles se calculan sobre una copia de las cubetas al leerlos.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets.getAndIncrement(index(nanos));
+        count.increment();
+        sum.add(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) m = max.get();
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long totalNanos() {
+        return sum.sum();
+    }
+
+    long maxNanos() {
+        return max.get();
+    }
+
+    /** Percentil {@code q} (0..1) en nanosegundos: punto medio de la cubeta que lo contiene; 0 si está vacío. */
+    long percentile(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(midpoint(i), max.get());
+        }
+        return max.get();
+    }
+
+    /** Vacía el histograma. No es atómico frente a registros concurrentes: puede perder o mezclar alguno. */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int index(long v) {
+        if (v < SUB) return (int) v;
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (msb - SUB_BITS)) & (SUB - 1);
+        return (msb - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long midpoint(int index) {
+        if (index < SUB) return index;
+        int shift = index / SUB - 1;
+        long lower = (long) (SUB + index % SUB) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+}
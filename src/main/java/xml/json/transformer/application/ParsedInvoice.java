@@ -0,0 +1,125 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AttachedDocument parseado UNA sola vez por ejecución.
+ * <p>
+ * Guarda el DOM externo sin modificar, parsea cada Invoice embebido a lo sumo una vez (bajo demanda)
+ * y cachea los campos que usa el cuestionario ({@link PrefillScanner}: una pasada por documento). Cuando hace falta una
+ * copia mutable para transformar se entrega un {@code cloneNode(true)}, mucho más barato que volver
+ * a leer el archivo. No es thread-safe: se usa desde el hilo que procesa el archivo.
+ */
+public final class ParsedInvoice {
+
+    static final String DESCRIPTION_TEXTS = "//cbc:Description/text()";
+
+    private final XmlAdapterService xmlService;
+    private final Path source;
+    private final Document outer;
+    private final List<String> descriptionTexts = new ArrayList<>(); // mismo orden que DESCRIPTION_TEXTS
+    private final Map<Integer, Document> embeddedByIndex = new HashMap<>();
+
+    private final EmbeddedInvoiceLocator.OuterFields outerFields;
+    private PrefillScanner.EmbeddedFields embeddedFields;
+    private List<DescriptionRangeScanner.Range> descriptionRanges;
+    private boolean rangesScanned;
+
+    private ParsedInvoice(XmlAdapterService xmlService, Path source, Document outer) throws Exception {
+        this.xmlService = xmlService;
+        this.source = source;
+        this.outer = outer;
+
+        NodeList texts = XPathRegistry.nodes(outer, DESCRIPTION_TEXTS);
+        for (int i = 0; i < texts.getLength(); i++) {
+            String v = texts.item(i).getNodeValue();
+            descriptionTexts.add(v == null ? "" : v);
+        }
+        this.outerFields = PrefillScanner.outer(outer);
+    }
+
+    public static ParsedInvoice read(XmlAdapterService xmlService, Path file) throws Exception {
+        return new ParsedInvoice(xmlService, file, xmlService.readXml(file.toString()));
+    }
+
+    /** Documento ya parseado que no tiene archivo de origen (no admite salida por empalme). */
+    public static ParsedInvoice of(XmlAdapterService xmlService, Document outer) throws Exception {
+        return new ParsedInvoice(xmlService, null, outer);
+    }
+
+    /** Archivo de origen, o null si el documento vino de memoria. */
+    public Path source() { return source; }
+
+    /** DOM externo original; no debe modificarse (use {@link #mutableCopy()}). */
+    public Document outer() { return outer; }
+
+    /** Texto de {@code cbc:IssueDate} (vacío si no existe). */
+    public String issueDate() { return outerFields.issueDate; }
+
+    /** Texto de {@code cbc:ParentDocumentID} (vacío si no existe). */
+    public String parentDocumentId() { return outerFields.parentDocumentId; }
+
+    /** Campos del documento externo para el cuestionario ({@code descriptionCount} no se llena). */
+    public EmbeddedInvoiceLocator.OuterFields outerFields() { return outerFields; }
+
+    /** Primer XML embebido (equivale a {@code extractEmbeddedXml}), o null. */
+    public Document embedded() throws Exception {
+        for (int i = 0; i < descriptionTexts.size(); i++) {
+            if (descriptionTexts.get(i).trim().startsWith("<")) return embeddedAt(i);
+        }
+        return null;
+    }
+
+    /** Valor de CODIGO PRESTADOR en el XML embebido (vacío si no existe). */
+    public String codPrestador() throws Exception {
+        return embeddedFields().codPrestador;
+    }
+
+    /** Campos del primer XML embebido para el cuestionario (se leen una vez). */
+    PrefillScanner.EmbeddedFields embeddedFields() throws Exception {
+        if (embeddedFields == null) embeddedFields = PrefillScanner.embedded(embedded());
+        return embeddedFields;
+    }
+
+    /** Copia profunda del documento externo para aplicar transformaciones. */
+    public Document mutableCopy() {
+        return (Document) outer.cloneNode(true);
+    }
+
+    /** Rangos de bytes del contenido de cada {@code Description} en el archivo original; null si no aplica. */
+    List<DescriptionRangeScanner.Range> descriptionRanges() throws IOException {
+        if (!rangesScanned) {
+            descriptionRanges = source == null ? null : DescriptionRangeScanner.scan(source);
+            rangesScanned = true;
+        }
+        return descriptionRanges;
+    }
+
+    /** Copia profunda del XML embebido en el i-ésimo texto de {@code cbc:Description}. */
+    Document embeddedCopy(int descriptionIndex) throws Exception {
+        return (Document) embeddedAt(descriptionIndex).cloneNode(true);
+    }
+
+    /** Como {@link #embeddedCopy(int)} pero sin parsear: null si ese Invoice aún no se había parseado. */
+    Document cachedEmbeddedCopy(int descriptionIndex) {
+        Document d = embeddedByIndex.get(descriptionIndex);
+        return d == null ? null : (Document) d.cloneNode(true);
+    }
+
+    private Document embeddedAt(int index) throws Exception {
+        Document d = embeddedByIndex.get(index);
+        if (d == null) {
+            d = xmlService.parseInnerXml(descriptionTexts.get(index).trim());
+            embeddedByIndex.put(index, d);
+        }
+        return d;
+    }
+}
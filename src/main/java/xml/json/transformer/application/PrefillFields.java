@@ -0,0 +1,35 @@
+package xml.json.transformer.application;
+
+/**
+ * Valores que el cuestionario muestra precargados, leídos del XML externo y del Invoice embebido.
+ * Se extraen una vez ({@link JsonBuilderService#extractFields}) antes de abrir el formulario.
+ */
+public final class PrefillFields {
+    /** {@code cbc:CompanyID[@schemeID='8']} del documento externo. */
+    public final String nitObligado;
+    /** {@code cbc:ParentDocumentID}. */
+    public final String parentDocumentId;
+    /** CompanyID del ReceiverParty (o del AccountingCustomerParty si falta). */
+    public final String docIdentServicio;
+    public final String codPrestador;
+    /** {@code cbc:Note} sin el prefijo "Linea de negocio:". */
+    public final String noteHeader;
+    public final String numAutorizacion;
+    public final String codTecnologia;
+    public final String nomTecnologia;
+    /** {@code cbc:LineExtensionAmount} truncado a entero (0 si falta o no es numérico). */
+    public final int valor;
+
+    PrefillFields(String nitObligado, String parentDocumentId, String docIdentServicio, String codPrestador,
+                  String noteHeader, String numAutorizacion, String codTecnologia, String nomTecnologia, int valor) {
+        this.nitObligado = nitObligado;
+        this.parentDocumentId = parentDocumentId;
+        this.docIdentServicio = docIdentServicio;
+        this.codPrestador = codPrestador;
+        this.noteHeader = noteHeader;
+        this.numAutorizacion = numAutorizacion;
+        this.codTecnologia = codTecnologia;
+        this.nomTecnologia = nomTecnologia;
+        this.valor = valor;
+    }
+}
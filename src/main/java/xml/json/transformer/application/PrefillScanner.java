@@ -0,0 +1,377 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Campos que precargan el cuestionario, leídos en UNA pasada por documento en lugar de una consulta XPath
+ * {@code //...} (un recorrido completo) por campo.
+ * <p>
+ * Los campos se declaran en {@link #OUTER} y {@link #EMBEDDED} (elemento, namespace, atributo, ancestros o padre);
+ * el recorrido los busca todos a la vez y se detiene en cuanto tiene el último, así que en un Invoice con muchas
+ * líneas no se llega más allá de la primera. Cada campo toma el texto completo del primer elemento que cumple,
+ * recortado, igual que {@code string(//...)}; si no aparece queda vacío.
+ * <p>
+ * El Invoice embebido se puede recorrer ya parseado (modo DOM) o como texto con StAX (modo streaming, sin
+ * construir su DOM). El documento externo sólo en DOM: en streaming sus campos ya salen de
+ * {@link EmbeddedInvoiceLocator}. El tiempo cuenta en {@link Stage#PREFILL}.
+ */
+final class PrefillScanner {
+
+    private static final String CBC = XPathRegistry.NS.get("cbc");
+    private static final String CAC = XPathRegistry.NS.get("cac");
+    private static final String STS = XPathRegistry.NS.get("sts");
+    /** Cualquier namespace. */
+    private static final String ANY = null;
+
+    // ------------------------------------------------------------------
+    // Mapa de campos
+    // ------------------------------------------------------------------
+
+    private static final int ISSUE_DATE = 0, PARENT_ID = 1, NIT = 2, RECEIVER = 3, CUSTOMER = 4;
+
+    /** Documento externo; mismo orden que los índices de arriba. */
+    static final Field[] OUTER = {
+            field(ANY, "IssueDate"),
+            field(ANY, "ParentDocumentID"),
+            field(CBC, "CompanyID").attribute("schemeID", "8"),
+            field(CBC, "CompanyID").within(CAC, "ReceiverParty").within(CAC, "PartyTaxScheme"),
+            field(CBC, "CompanyID").within(CAC, "AccountingCustomerParty").within(CAC, "PartyTaxScheme"),
+    };
+
+    private static final int NOTE = 0, AUTHORIZATION = 1, COD_TECNOLOGIA = 2, NOM_TECNOLOGIA = 3, VALOR = 4,
+            COD_PRESTADOR = 5;
+
+    /** Invoice embebido; mismo orden que los índices de arriba. */
+    static final Field[] EMBEDDED = {
+            field(CBC, "Note"),
+            field(STS, "InvoiceAuthorization"),
+            field(CBC, "ID").parent(CAC, "StandardItemIdentification"),
+            field(CBC, "Description").parent(CAC, "Item"),
+            field(CBC, "LineExtensionAmount"),
+            // //*:AdditionalInformation/*:Name[normalize-space(text())='CODIGO PRESTADOR']/following-sibling::*:Value[1]
+            field(ANY, "Value").afterLabel("AdditionalInformation", "Name", "CODIGO PRESTADOR", "CODIGO_PRESTADOR"),
+    };
+
+    /** Campos del Invoice embebido que usa el cuestionario. */
+    static final class EmbeddedFields {
+        /** Sin Invoice embebido: los campos quedan null (el código de prestador, vacío). */
+        static final EmbeddedFields NONE = new EmbeddedFields(null, null, null, null, null, "");
+
+        final String note;
+        final String numAutorizacion;
+        final String codTecnologia;
+        final String nomTecnologia;
+        final String lineExtensionAmount;
+        final String codPrestador;
+
+        private EmbeddedFields(String note, String numAutorizacion, String codTecnologia, String nomTecnologia,
+                               String lineExtensionAmount, String codPrestador) {
+            this.note = note;
+            this.numAutorizacion = numAutorizacion;
+            this.codTecnologia = codTecnologia;
+            this.nomTecnologia = nomTecnologia;
+            this.lineExtensionAmount = lineExtensionAmount;
+            this.codPrestador = codPrestador;
+        }
+
+        private static EmbeddedFields of(String[] v) {
+            return new EmbeddedFields(v[NOTE], v[AUTHORIZATION], v[COD_TECNOLOGIA], v[NOM_TECNOLOGIA], v[VALOR],
+                    v[COD_PRESTADOR]);
+        }
+    }
+
+    private PrefillScanner() {}
+
+    // ------------------------------------------------------------------
+    // API
+    // ------------------------------------------------------------------
+
+    /** Campos del documento externo ya parseado ({@code descriptionCount} no se llena); vacíos si es null. */
+    static EmbeddedInvoiceLocator.OuterFields outer(Document doc) {
+        if (doc == null) return new EmbeddedInvoiceLocator.OuterFields();
+        StageTimer timer = StageTimer.start();
+        String[] v = scan(doc, OUTER);
+        timer.stop(Stage.PREFILL, doc, 0);
+
+        EmbeddedInvoiceLocator.OuterFields f = new EmbeddedInvoiceLocator.OuterFields();
+        f.issueDate = v[ISSUE_DATE];
+        f.parentDocumentId = v[PARENT_ID];
+        f.nitObligado = v[NIT];
+        f.receiverCompanyId = v[RECEIVER];
+        f.customerCompanyId = v[CUSTOMER];
+        return f;
+    }
+
+    /** Campos del Invoice embebido ya parseado; {@link EmbeddedFields#NONE} si es null. */
+    static EmbeddedFields embedded(Document doc) {
+        if (doc == null) return EmbeddedFields.NONE;
+        StageTimer timer = StageTimer.start();
+        String[] v = scan(doc, EMBEDDED);
+        timer.stop(Stage.PREFILL, doc, 0);
+        return EmbeddedFields.of(v);
+    }
+
+    /** Campos del Invoice embebido leyendo su texto con StAX, sin construir el DOM; NONE si es null. */
+    static EmbeddedFields embedded(String xml) throws Exception {
+        if (xml == null) return EmbeddedFields.NONE;
+        StageTimer timer = StageTimer.start();
+        String[] v;
+        XMLStreamReader r = XmlPools.staxInputFactory().createXMLStreamReader(new StringReader(xml));
+        try {
+            v = scan(r, EMBEDDED);
+        } finally {
+            r.close();
+        }
+        timer.stop(Stage.PREFILL, xml);
+        return EmbeddedFields.of(v);
+    }
+
+    // ------------------------------------------------------------------
+    // Recorridos
+    // ------------------------------------------------------------------
+
+    static String[] scan(Document doc, Field[] fields) {
+        Scan s = new Scan(fields);
+        Element root = doc.getDocumentElement();
+        if (root != null) walk(root, s);
+        return s.result();
+    }
+
+    private static void walk(Element e, Scan s) {
+        s.start(e.getNamespaceURI(), localName(e), name -> e.hasAttributeNS(null, name) ? e.getAttributeNS(null, name) : null);
+        // Se corta en cuanto están todos los campos
+        for (Node c = e.getFirstChild(); c != null && !s.done(); c = c.getNextSibling()) {
+            switch (c.getNodeType()) {
+                case Node.ELEMENT_NODE -> walk((Element) c, s);
+                case Node.TEXT_NODE, Node.CDATA_SECTION_NODE -> s.text(c.getNodeValue());
+                default -> { }
+            }
+        }
+        s.end();
+    }
+
+    static String[] scan(XMLStreamReader r, Field[] fields) throws Exception {
+        Scan s = new Scan(fields);
+        while (r.hasNext() && !s.done()) {
+            switch (r.next()) {
+                case XMLStreamConstants.START_ELEMENT -> s.start(r.getNamespaceURI(), r.getLocalName(), name -> r.getAttributeValue(null, name));
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE ->
+                        s.text(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+                case XMLStreamConstants.END_ELEMENT -> s.end();
+                default -> { }
+            }
+        }
+        return s.result();
+    }
+
+    private static String localName(Node n) {
+        String local = n.getLocalName();
+        if (local != null) return local;
+        String qname = n.getNodeName();
+        return qname.substring(qname.indexOf(':') + 1);
+    }
+
+    // ------------------------------------------------------------------
+    // Declaración de campos
+    // ------------------------------------------------------------------
+
+    static Field field(String namespace, String localName) {
+        return new Field(namespace, localName);
+    }
+
+    /** Elemento a buscar y sus condiciones; los métodos devuelven el mismo objeto para encadenar. */
+    static final class Field {
+        final String namespace;  // null: cualquiera
+        final String localName;
+        String attribute, attributeValue;
+        String[] withinNs = new String[0], withinLocal = new String[0]; // ancestros, a cualquier profundidad
+        String parentNs, parentLocal;
+        // afterLabel
+        String container, label;
+        Set<String> labelTexts;
+
+        private Field(String namespace, String localName) {
+            this.namespace = namespace;
+            this.localName = localName;
+        }
+
+        /** Con el atributo (sin namespace) {@code name="value"}. */
+        Field attribute(String name, String value) {
+            this.attribute = name;
+            this.attributeValue = value;
+            return this;
+        }
+
+        /** Dentro de algún {@code ns:local} abierto, a cualquier profundidad (como {@code //a//b}). */
+        Field within(String ns, String local) {
+            withinNs = Arrays.copyOf(withinNs, withinNs.length + 1);
+            withinLocal = Arrays.copyOf(withinLocal, withinLocal.length + 1);
+            withinNs[withinNs.length - 1] = ns;
+            withinLocal[withinLocal.length - 1] = local;
+            return this;
+        }
+
+        /** Hijo directo de {@code ns:local} (como {@code a/b}). */
+        Field parent(String ns, String local) {
+            this.parentNs = ns;
+            this.parentLocal = local;
+            return this;
+        }
+
+        /**
+         * El primer hermano siguiente con este nombre de un {@code label} cuyo texto propio, normalizado, sea
+         * alguno de {@code texts}, dentro de un {@code container} (nombres locales, cualquier namespace).
+         */
+        Field afterLabel(String container, String label, String... texts) {
+            this.container = container;
+            this.label = label;
+            this.labelTexts = Set.of(texts);
+            return this;
+        }
+    }
+
+    private interface Attributes {
+        String get(String name);
+    }
+
+    /** Estado de un recorrido: pila de elementos abiertos y texto de los campos que se están leyendo. */
+    private static final class Scan {
+        private final Field[] fields;
+        private final String[] values;
+        private final StringBuilder[] text;
+        private final int[] openDepth;
+        private final int[] labelDepth;   // afterLabel: etiqueta abierta
+        private final int[] armedDepth;   // afterLabel: contenedor donde ya se vio la etiqueta
+        private int found;
+
+        private String[] nsStack = new String[32];
+        private String[] localStack = new String[32];
+        private int depth; // el elemento abierto más interno está en [depth - 1]
+
+        Scan(Field[] fields) {
+            this.fields = fields;
+            this.values = new String[fields.length];
+            this.text = new StringBuilder[fields.length];
+            this.openDepth = new int[fields.length];
+            this.labelDepth = new int[fields.length];
+            this.armedDepth = new int[fields.length];
+            Arrays.fill(openDepth, -1);
+            Arrays.fill(labelDepth, -1);
+            Arrays.fill(armedDepth, -1);
+        }
+
+        boolean done() { return found == fields.length; }
+
+        String[] result() {
+            for (int i = 0; i < values.length; i++) if (values[i] == null) values[i] = "";
+            return values;
+        }
+
+        void start(String ns, String local, Attributes attributes) {
+            if (depth == nsStack.length) {
+                nsStack = Arrays.copyOf(nsStack, depth * 2);
+                localStack = Arrays.copyOf(localStack, depth * 2);
+            }
+            nsStack[depth] = ns;
+            localStack[depth] = local;
+            depth++;
+
+            for (int i = 0; i < fields.length; i++) {
+                if (values[i] != null || openDepth[i] >= 0) continue;
+                Field f = fields[i];
+                if (f.label != null) {
+                    boolean inContainer = depth >= 2 && f.container.equals(localStack[depth - 2]);
+                    if (inContainer && labelDepth[i] < 0 && f.label.equals(local)) {
+                        labelDepth[i] = depth;
+                        text[i] = new StringBuilder();
+                    } else if (armedDepth[i] == depth - 1 && f.localName.equals(local) && nsMatches(f.namespace, ns)) {
+                        open(i);
+                    }
+                } else if (matches(f, ns, local, attributes)) {
+                    open(i);
+                }
+            }
+        }
+
+        private boolean matches(Field f, String ns, String local, Attributes attributes) {
+            if (!f.localName.equals(local) || !nsMatches(f.namespace, ns)) return false;
+            if (f.parentLocal != null && (depth < 2 || !f.parentLocal.equals(localStack[depth - 2])
+                    || !nsMatches(f.parentNs, nsStack[depth - 2]))) return false;
+            for (int k = 0; k < f.withinLocal.length; k++) {
+                if (!isOpen(f.withinNs[k], f.withinLocal[k])) return false;
+            }
+            return f.attribute == null || f.attributeValue.equals(attributes.get(f.attribute));
+        }
+
+        private boolean isOpen(String ns, String local) {
+            for (int d = depth - 2; d >= 0; d--) {
+                if (local.equals(localStack[d]) && nsMatches(ns, nsStack[d])) return true;
+            }
+            return false;
+        }
+
+        private static boolean nsMatches(String expected, String actual) {
+            return expected == null || expected.equals(actual);
+        }
+
+        private void open(int i) {
+            openDepth[i] = depth;
+            text[i] = new StringBuilder();
+        }
+
+        void text(String s) {
+            for (int i = 0; i < fields.length; i++) {
+                if (openDepth[i] >= 0 || labelDepth[i] == depth) text[i].append(s);
+            }
+        }
+
+        void text(char[] ch, int start, int length) {
+            for (int i = 0; i < fields.length; i++) {
+                if (openDepth[i] >= 0 || labelDepth[i] == depth) text[i].append(ch, start, length);
+            }
+        }
+
+        void end() {
+            for (int i = 0; i < fields.length; i++) {
+                if (openDepth[i] == depth) {
+                    values[i] = text[i].toString().trim();
+                    text[i] = null;
+                    openDepth[i] = -1;
+                    found++;
+                } else if (labelDepth[i] == depth) {
+                    if (fields[i].labelTexts.contains(normalizeSpace(text[i]))) armedDepth[i] = depth - 1;
+                    text[i] = null;
+                    labelDepth[i] = -1;
+                } else if (armedDepth[i] == depth) {
+                    armedDepth[i] = -1; // se cerró el contenedor
+                }
+            }
+            depth--;
+        }
+
+        /** {@code normalize-space()} de XPath. */
+        private static String normalizeSpace(CharSequence s) {
+            StringBuilder out = new StringBuilder(s.length());
+            boolean space = false;
+            for (int k = 0; k < s.length(); k++) {
+                char c = s.charAt(k);
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    space = out.length() > 0;
+                } else {
+                    if (space) out.append(' ');
+                    out.append(c);
+                    space = false;
+                }
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package xml.json.transformer.application;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro persistente de lo ya procesado, en {@code <outRoot>/.xmlt-manifest.tsv}: por cada archivo de
+ * entrada, el SHA-256 de su contenido, la huella de las respuestas usadas, la versión del motor y las salidas.
+ * <p>
+ * Un archivo se omite si su SHA-256 y la versión del motor coinciden con lo registrado, sus salidas siguen
+ * existiendo, nadie las reemplazó después (otra entrada con la misma factura) y (cuando el {@link AnswerProvider}
+ * puede calcularla) la huella de las respuestas no cambió.
+ * La búsqueda es O(1) sobre un mapa cargado una vez. El archivo es de sólo anexar: cada registro es una
+ * línea escrita de una vez bajo un {@link FileLock}, así que lo pueden compartir varios hilos y procesos;
+ * al cargar, la última línea de cada entrada gana.
+ */
+public final class ProcessingManifest implements Closeable {
+
+    public static final String FILE_NAME = ".xmlt-manifest.tsv";
+    private static final String HEADER = "# xmlt-manifest v1\tinput\tsha256\tanswers\tengine\tfactura\txml\tjson\tprocessedAt\n";
+    private static final String NONE = "-";
+    private static final HexFormat HEX = HexFormat.of();
+
+    /** Una línea del manifiesto. Las rutas de salida son relativas a {@code outRoot}. */
+    public static final class Entry {
+        public final String input;
+        public final String sha256;
+        public final String answersHash;
+        public final String engineVersion;
+        public final String factura;
+        public final String outXml;
+        public final String outJson;
+        public final String processedAt;
+
+        Entry(String input, String sha256, String answersHash, String engineVersion, String factura,
+              String outXml, String outJson, String processedAt) {
+            this.input = input;
+            this.sha256 = sha256;
+            this.answersHash = answersHash;
+            this.engineVersion = engineVersion;
+            this.factura = factura;
+            this.outXml = outXml;
+            this.outJson = outJson;
+            this.processedAt = processedAt;
+        }
+
+        String toLine() {
+            return String.join("\t", clean(input), sha256, clean(answersHash), clean(engineVersion), clean(factura),
+                    clean(outXml), clean(outJson), processedAt) + "\n";
+        }
+
+        static Entry parse(String line) {
+            String[] f = line.split("\t", -1);
+            if (f.length < 8) return null;
+            return new Entry(f[0], f[1], f[2], f[3], f[4], f[5], f[6], f[7]);
+        }
+    }
+
+    private final Path outRoot;
+    private final Path file;
+    private final Map<String, Entry> entries;
+    /** Entrada que escribió por última vez cada salida XML: la que está en disco. */
+    private final Map<String, String> owners;
+    private final FileChannel channel;
+
+    private ProcessingManifest(Path outRoot, Path file, Map<String, Entry> entries, Map<String, String> owners,
+                               FileChannel channel) {
+        this.outRoot = outRoot;
+        this.file = file;
+        this.entries = entries;
+        this.owners = owners;
+        this.channel = channel;
+    }
+
+    /** Carga (o crea) el manifiesto de {@code outRoot}. */
+    public static ProcessingManifest open(Path outRoot) throws IOException {
+        Files.createDirectories(outRoot);
+        Path file = outRoot.resolve(FILE_NAME);
+
+        // ~200 bytes por línea: se dimensiona el mapa de una vez para no re-hashear con 100k entradas
+        long size = Files.exists(file) ? Files.size(file) : 0;
+        int expected = (int) Math.min(Integer.MAX_VALUE / 2, size / 200 + 16);
+        Map<String, Entry> entries = new ConcurrentHashMap<>(expected * 4 / 3 + 1);
+        Map<String, String> owners = new ConcurrentHashMap<>(expected * 4 / 3 + 1);
+        if (size > 0) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    Entry e = Entry.parse(line);
+                    if (e == null) continue;
+                    entries.put(e.input, e);
+                    owners.put(e.outXml, e.input);
+                }
+            }
+        }
+
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        ProcessingManifest m = new ProcessingManifest(outRoot, file, entries, owners, channel);
+        if (size == 0) m.append(HEADER);
+        return m;
+    }
+
+    /** SHA-256 (hex) del contenido de {@code file}. */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
+        }
+        return HEX.formatHex(md.digest());
+    }
+
+    /** SHA-256 (hex) de {@code data}. */
+    static String sha256(byte[] data) {
+        return HEX.formatHex(newDigest().digest(data));
+    }
+
+    /** Los primeros 12 caracteres de {@link #sha256(byte[])}: identifican un archivo de reglas u hoja XSLT. */
+    static String sha256Prefix(byte[] data) {
+        return HEX.formatHex(newDigest().digest(data), 0, 6);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public Entry get(Path input) {
+        return entries.get(key(input));
+    }
+
+    /**
+     * true si {@code input} ya se procesó con este contenido, esta versión de motor y (si el proveedor
+     * la conoce) las mismas respuestas, y sus salidas siguen en disco sin que otra entrada las haya reemplazado.
+     */
+    public boolean isUpToDate(Path input, String sha256, String engineVersion, AnswerProvider answers) throws IOException {
+        Entry e = entries.get(key(input));
+        if (e == null || !e.sha256.equals(sha256) || !e.engineVersion.equals(engineVersion)) return false;
+        if (!e.input.equals(owners.get(e.outXml))) return false;
+        if (!Files.isRegularFile(outRoot.resolve(e.outXml)) || !Files.isRegularFile(outRoot.resolve(e.outJson))) {
+            return false;
+        }
+        String current = answers == null ? null : answers.fingerprint(e.factura);
+        return current == null || current.equals(e.answersHash);
+    }
+
+    /**
+     * Registra un procesamiento exitoso. Se llama mientras se tiene la carpeta de la factura, así que el orden
+     * de los registros de una misma factura es el orden en que se escribieron sus salidas.
+     */
+    public void record(Path input, String sha256, String engineVersion, AnswerProvider answers,
+                       InvoiceProcessor.Result result) throws IOException {
+        String answersHash = answers == null ? null : answers.fingerprint(result.factura);
+        Entry e = new Entry(key(input), sha256, answersHash == null ? NONE : answersHash, engineVersion,
+                result.factura, relative(result.outXml), relative(result.outJson), Instant.now().toString());
+        append(e.toLine());
+        entries.put(e.input, e);
+        String previous = owners.put(e.outXml, e.input);
+        if (previous != null && !previous.equals(e.input)) {
+            System.err.println("⚠️ " + e.factura + ": la salida de " + Path.of(previous).getFileName()
+                    + " se reemplaza con la de " + input.getFileName());
+        }
+    }
+
+    private synchronized void append(String text) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        FileLock lock = channel.lock();
+        try {
+            while (buf.hasRemaining()) channel.write(buf);
+        } finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static String key(Path input) {
+        return input.toAbsolutePath().normalize().toString();
+    }
+
+    private String relative(Path p) {
+        Path abs = p.toAbsolutePath().normalize();
+        return abs.startsWith(outRoot.toAbsolutePath().normalize())
+                ? outRoot.toAbsolutePath().normalize().relativize(abs).toString()
+                : abs.toString();
+    }
+
+    private static String clean(String s) {
+        if (s == null || s.isEmpty()) return NONE;
+        return s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
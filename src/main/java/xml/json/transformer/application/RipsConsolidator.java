@@ -0,0 +1,218 @@
+package xml.json.transformer.application;
+
+import xml.json.transformer.domain.InvoiceData;
+import xml.json.transformer.domain.UserData;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Consolida muchos {@link InvoiceData} (uno por factura procesada) en un RIPS por
+ * {@code numDocumentoIdObligado}, agrupando los usuarios por {@code numDocumentoIdentificacion} y
+ * uniendo sus {@code otrosServicios}.
+ * <p>
+ * {@link #add} es thread-safe (lo llaman los hilos del batch); el orden de salida no depende del orden de
+ * llegada sino de la secuencia de entrada que acompaña a cada factura, así que dos corridas con los mismos
+ * archivos producen los mismos JSON. Los {@code consecutivo} se reasignan al escribir: 1..n por usuario
+ * dentro de cada obligado y 1..n por servicio dentro de cada usuario.
+ */
+public final class RipsConsolidator {
+
+    /** Clave para los datos sin obligado/usuario. */
+    private static final String SIN_VALOR = "";
+
+    /** Un servicio con la posición en que llegó: (secuencia de la factura, índice dentro de ella). */
+    private static final class SeqService {
+        final long seq;
+        final int index;
+        final UserData.OtrosServicios servicio;
+
+        SeqService(long seq, int index, UserData.OtrosServicios servicio) {
+            this.seq = seq;
+            this.index = index;
+            this.servicio = servicio;
+        }
+    }
+
+    private static final Comparator<SeqService> BY_POSITION =
+            Comparator.<SeqService>comparingLong(s -> s.seq).thenComparingInt(s -> s.index);
+
+    /** Usuario consolidado: datos del primer registro (menor secuencia) + todos sus servicios. */
+    private static final class UserGroup {
+        private long firstSeq = Long.MAX_VALUE;
+        private UserData first;
+        private final List<SeqService> servicios = new ArrayList<>();
+
+        synchronized void add(long seq, UserData user) {
+            if (seq < firstSeq) {
+                firstSeq = seq;
+                first = user;
+            }
+            List<UserData.OtrosServicios> os = user.servicios == null ? List.of() : user.servicios.otrosServicios;
+            for (int i = 0; i < os.size(); i++) servicios.add(new SeqService(seq, i, os.get(i)));
+        }
+    }
+
+    /** Todo lo de un obligado. Los encabezados sólo se conservan si coinciden en todas sus facturas. */
+    private static final class ObligadoGroup {
+        final ConcurrentMap<String, UserGroup> users = new ConcurrentHashMap<>();
+        private final Set<String> facturas = new HashSet<>();
+        private final Set<String> tiposNota = new HashSet<>();
+        private final Set<String> numsNota = new HashSet<>();
+        private int invoices;
+
+        synchronized void addHeader(InvoiceData data) {
+            invoices++;
+            facturas.add(String.valueOf(data.numFactura));
+            tiposNota.add(String.valueOf(data.tipoNota));
+            numsNota.add(String.valueOf(data.numNota));
+        }
+
+        synchronized String single(Set<String> values) {
+            if (values.size() != 1) return null;
+            String v = values.iterator().next();
+            return "null".equals(v) ? null : v;
+        }
+    }
+
+    private final ConcurrentMap<String, ObligadoGroup> groups = new ConcurrentHashMap<>();
+
+    /**
+     * Agrega una factura.
+     *
+     * @param seq posición de la factura en la entrada (p. ej. el índice del archivo en el listado ordenado);
+     *            define el orden de usuarios y servicios en la salida.
+     */
+    public void add(long seq, InvoiceData data) {
+        if (data == null) return;
+        ObligadoGroup g = groups.computeIfAbsent(keyOf(data.numDocumentoIdObligado), k -> new ObligadoGroup());
+        g.addHeader(data);
+        if (data.usuarios == null) return;
+        for (UserData u : data.usuarios) {
+            g.users.computeIfAbsent(keyOf(u.numDocumentoIdentificacion), k -> new UserGroup()).add(seq, u);
+        }
+    }
+
+    public boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    /** Obligados consolidados hasta ahora, en orden. */
+    public List<String> obligados() {
+        List<String> keys = new ArrayList<>(groups.keySet());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Escribe {@code outDir/rips_<obligado>.json} por cada obligado, con el escritor en streaming
+     * ({@link JsonWriters#writeInvoice}): los usuarios consolidados se arman uno a uno al serializar.
+     *
+     * @return los archivos escritos, en orden de obligado.
+     */
+    public List<Path> writeAll(Path outDir, boolean pretty) throws IOException {
+        Files.createDirectories(outDir);
+        List<Path> written = new ArrayList<>();
+        for (String obligado : obligados()) {
+            ObligadoGroup g = groups.get(obligado);
+
+            InvoiceData header = new InvoiceData();
+            header.numDocumentoIdObligado = obligado.isEmpty() ? null : obligado;
+            header.numFactura = g.single(g.facturas);
+            header.tipoNota = g.single(g.tiposNota);
+            header.numNota = g.single(g.numsNota);
+
+            List<UserGroup> users = new ArrayList<>(g.users.values());
+            users.sort(Comparator.comparingLong(u -> u.firstSeq));
+
+            Path out = outDir.resolve("rips_" + fileNameOf(obligado) + ".json");
+            JsonWriters.writeInvoice(header, mergedUsers(users), out, pretty);
+            written.add(out);
+
+            int servicios = 0;
+            for (UserGroup u : users) servicios += u.servicios.size();
+            System.out.println("✅ RIPS consolidado: " + out.getFileName() + " (" + g.invoices + " facturas, "
+                    + users.size() + " usuarios, " + servicios + " servicios)");
+        }
+        return written;
+    }
+
+    /** Construye cada {@code UserData} consolidado sólo cuando el escritor lo pide. */
+    private static Iterator<UserData> mergedUsers(List<UserGroup> users) {
+        Iterator<UserGroup> it = users.iterator();
+        return new Iterator<>() {
+            int consecutivo = 0;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public UserData next() {
+                return merge(it.next(), ++consecutivo);
+            }
+        };
+    }
+
+    private static UserData merge(UserGroup g, int consecutivo) {
+        UserData src = g.first;
+        UserData u = new UserData();
+        u.tipoDocumentoIdentificacion = src.tipoDocumentoIdentificacion;
+        u.numDocumentoIdentificacion = src.numDocumentoIdentificacion;
+        u.tipoUsuario = src.tipoUsuario;
+        u.fechaNacimiento = src.fechaNacimiento;
+        u.codSexo = src.codSexo;
+        u.codPaisResidencia = src.codPaisResidencia;
+        u.codMunicipioResidencia = src.codMunicipioResidencia;
+        u.codZonaTerritorialResidencia = src.codZonaTerritorialResidencia;
+        u.incapacidad = src.incapacidad;
+        u.codPaisOrigen = src.codPaisOrigen;
+        u.consecutivo = consecutivo;
+
+        List<SeqService> ordered = new ArrayList<>(g.servicios);
+        ordered.sort(BY_POSITION);
+        List<UserData.OtrosServicios> os = u.servicios.otrosServicios;
+        int n = 0;
+        for (SeqService s : ordered) {
+            UserData.OtrosServicios copy = copyOf(s.servicio);
+            copy.consecutivo = ++n;
+            os.add(copy);
+        }
+        return u;
+    }
+
+    /** Copia para no tocar el {@code consecutivo} del InvoiceData original (ya escrito en su propio JSON). */
+    private static UserData.OtrosServicios copyOf(UserData.OtrosServicios s) {
+        UserData.OtrosServicios c = new UserData.OtrosServicios();
+        c.codPrestador = s.codPrestador;
+        c.numAutorizacion = s.numAutorizacion;
+        c.idMIPRES = s.idMIPRES;
+        c.fechaSuministroTecnologia = s.fechaSuministroTecnologia;
+        c.tipoOS = s.tipoOS;
+        c.codTecnologiaSalud = s.codTecnologiaSalud;
+        c.nomTecnologiaSalud = s.nomTecnologiaSalud;
+        c.cantidadOS = s.cantidadOS;
+        c.tipoDocumentoIdentificacion = s.tipoDocumentoIdentificacion;
+        c.numDocumentoIdentificacion = s.numDocumentoIdentificacion;
+        c.vrUnitOS = s.vrUnitOS;
+        c.vrServicio = s.vrServicio;
+        c.conceptoRecaudo = s.conceptoRecaudo;
+        c.valorPagoModerador = s.valorPagoModerador;
+        c.numFEVPagoModerador = s.numFEVPagoModerador;
+        return c;
+    }
+
+    private static String keyOf(String value) {
+        return value == null ? SIN_VALOR : value.trim();
+    }
+
+    private static String fileNameOf(String obligado) {
+        if (obligado.isEmpty()) return "sin_obligado";
+        return obligado.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
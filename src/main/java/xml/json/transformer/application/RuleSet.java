@@ -0,0 +1,406 @@
+package xml.json.transformer.application;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Reglas de transformación del Invoice embebido, definidas en JSON y aplicadas en UN solo recorrido del DOM.
+ * <p>
+ * Al cargar se compilan las expresiones regulares, se parsean los bloques a insertar y se arma un índice
+ * {@code localName → reglas}; al aplicar, cada elemento consulta sólo las reglas de su nombre local, así que el
+ * costo por documento es O(nodos) sin importar cuántas reglas haya.
+ * <pre>{@code
+ * {
+ *   "namespaces": { "x": "urn:..." },                       // opcional, además de cbc/cac/sts/xades
+ *   "rules": [
+ *     { "id": "A",
+ *       "match": { "localName": "Group",                    // obligatorio
+ *                  "namespace": "cbc",                      // prefijo conocido o URI; sin él, cualquiera
+ *                  "ancestor": "Interoperabilidad",         // algún ancestro con ese nombre local
+ *                  "missingAttribute": "schemeName",
+ *                  "text": "\\d{12,}", "trim": false },     // regex sobre TODO el texto (recortado salvo trim=false)
+ *       "actions": [ { "type": "setAttribute", "name": "schemeName", "value": "Sector Salud" } ] } ] }
+ * }</pre>
+ * Acciones: {@code setAttribute(name, value)}, {@code setText(value)},
+ * {@code replaceText(pattern, with, upperCase?, lowerCase?)}, {@code truncate(length)}, {@code remove},
+ * {@code insert(position: before|after|first|last, xml)}.
+ * <p>
+ * Sobre un mismo elemento las reglas se aplican en el orden del archivo, cada una viendo lo que dejó la anterior
+ * (igual que cuando cada regla recorría el documento completo). Un elemento eliminado no se sigue recorriendo y
+ * los bloques insertados no se vuelven a evaluar.
+ * <p>
+ * Las reglas por defecto ({@code /rules/default-rules.json}) son las A–H del manual. Otro archivo se indica con
+ * {@code -Dxmlt.rules=<archivo>} o {@code --rules} en batch/vigilancia; sólo el motor DOM las aplica.
+ */
+public final class RuleSet {
+
+    static final String DEFAULT_RESOURCE = "/rules/default-rules.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    private static volatile RuleSet defaults;
+    private static volatile RuleSet configured;
+
+    private final String id;
+    private final String source;
+    private final int size;
+    private final Map<String, Rule[]> byLocalName;
+    /** Nombres usados en condiciones {@code ancestor}: sólo esos se cuentan durante el recorrido. */
+    private final Set<String> ancestorNames;
+    private final boolean inserts;
+
+    private RuleSet(String id, String source, List<Rule> rules) {
+        this.id = id;
+        this.source = source;
+        this.size = rules.size();
+        Map<String, List<Rule>> index = new HashMap<>();
+        Set<String> ancestors = new HashSet<>();
+        boolean anyInsert = false;
+        for (Rule r : rules) {
+            index.computeIfAbsent(r.localName, k -> new ArrayList<>()).add(r);
+            if (r.ancestor != null) ancestors.add(r.ancestor);
+            for (Action a : r.actions) anyInsert |= a instanceof Insert;
+        }
+        Map<String, Rule[]> frozen = new HashMap<>(index.size() * 4 / 3 + 1);
+        index.forEach((k, v) -> frozen.put(k, v.toArray(NO_RULES)));
+        this.byLocalName = frozen;
+        this.ancestorNames = ancestors;
+        this.inserts = anyInsert;
+    }
+
+    // ------------------------------------------------------------------
+    // Carga
+    // ------------------------------------------------------------------
+
+    /** Reglas A–H incluidas en el JAR (se cargan una vez). */
+    public static RuleSet defaults() {
+        RuleSet r = defaults;
+        if (r == null) {
+            synchronized (RuleSet.class) {
+                if ((r = defaults) == null) {
+                    try (InputStream in = RuleSet.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+                        if (in == null) throw new IllegalStateException("Recurso no encontrado: " + DEFAULT_RESOURCE);
+                        defaults = r = parse(in.readAllBytes(), "default", "reglas por defecto");
+                    } catch (IOException e) {
+                        throw new IllegalStateException("No se pudieron leer las reglas por defecto", e);
+                    }
+                }
+            }
+        }
+        return r;
+    }
+
+    /** {@code -Dxmlt.rules=<archivo>} si se indicó, si no las de por defecto (se cargan una vez). */
+    public static RuleSet configured() {
+        RuleSet r = configured;
+        if (r == null) {
+            synchronized (RuleSet.class) {
+                if ((r = configured) == null) {
+                    String file = System.getProperty("xmlt.rules");
+                    configured = r = file == null || file.isBlank() ? defaults() : load(Path.of(file.trim()));
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Reglas de un archivo JSON.
+     *
+     * @throws IllegalArgumentException si el archivo no se puede leer o alguna regla es inválida.
+     */
+    public static RuleSet load(Path file) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("No se pudieron leer las reglas " + file + ": " + e.getMessage(), e);
+        }
+        return parse(bytes, "rules:" + ProcessingManifest.sha256Prefix(bytes), file.toString());
+    }
+
+    private static RuleSet parse(byte[] json, String id, String source) {
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Reglas " + source + ": JSON inválido: " + e.getMessage(), e);
+        }
+        Map<String, String> ns = new HashMap<>(XPathRegistry.NS);
+        root.path("namespaces").fields().forEachRemaining(e -> ns.put(e.getKey(), e.getValue().asText()));
+
+        JsonNode rules = root.path("rules");
+        if (!rules.isArray()) throw new IllegalArgumentException("Reglas " + source + ": falta el arreglo \"rules\".");
+        List<Rule> out = new ArrayList<>(rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            JsonNode r = rules.get(i);
+            String ruleId = r.path("id").asText("#" + (i + 1));
+            try {
+                out.add(Rule.parse(ruleId, r, ns));
+            } catch (IllegalArgumentException e) { // incluye PatternSyntaxException
+                throw new IllegalArgumentException("Reglas " + source + ", regla " + ruleId + ": " + e.getMessage(), e);
+            }
+        }
+        return new RuleSet(id, source, out);
+    }
+
+    /** {@code default} para las reglas incluidas; {@code rules:<hash>} para un archivo (cambia con su contenido). */
+    public String id() { return id; }
+
+    public boolean isDefault() { return "default".equals(id); }
+
+    public int size() { return size; }
+
+    @Override
+    public String toString() {
+        return size + " reglas (" + source + ")";
+    }
+
+    // ------------------------------------------------------------------
+    // Aplicación: un recorrido en preorden
+    // ------------------------------------------------------------------
+
+    /** Aplica todas las reglas a {@code doc} en un solo recorrido. */
+    public void apply(Document doc) {
+        Element root = doc.getDocumentElement();
+        if (root == null || byLocalName.isEmpty()) return;
+        visit(root, new Walk(inserts));
+    }
+
+    private void visit(Element e, Walk w) {
+        String name = localName(e);
+        Rule[] rules = byLocalName.getOrDefault(name, NO_RULES);
+        for (Rule r : rules) {
+            if (r.matches(e, w) && r.apply(e, w)) return; // eliminado: no se recorre su contenido
+        }
+        boolean counted = ancestorNames.contains(name);
+        if (counted) w.enter(name);
+        for (Node c = e.getFirstChild(); c != null; ) {
+            Node next = c.getNextSibling(); // antes de visitar: el hijo puede eliminarse
+            if (c.getNodeType() == Node.ELEMENT_NODE && !w.isInserted(c)) visit((Element) c, w);
+            c = next;
+        }
+        if (counted) w.exit(name);
+    }
+
+    private static String localName(Node n) {
+        String local = n.getLocalName();
+        if (local != null) return local;
+        String qname = n.getNodeName();
+        return qname.substring(qname.indexOf(':') + 1);
+    }
+
+    /** Estado de un recorrido: ancestros abiertos por nombre y bloques recién insertados. */
+    private static final class Walk {
+        private final Map<String, int[]> open = new HashMap<>();
+        private final Set<Node> inserted;
+
+        Walk(boolean inserts) {
+            this.inserted = inserts ? Collections.newSetFromMap(new IdentityHashMap<>()) : null;
+        }
+
+        void enter(String name) { open.computeIfAbsent(name, k -> new int[1])[0]++; }
+
+        void exit(String name) { open.get(name)[0]--; }
+
+        boolean inside(String name) {
+            int[] n = open.get(name);
+            return n != null && n[0] > 0;
+        }
+
+        void markInserted(Node n) { inserted.add(n); }
+
+        boolean isInserted(Node n) { return inserted != null && inserted.contains(n); }
+    }
+
+    // ------------------------------------------------------------------
+    // Reglas y acciones
+    // ------------------------------------------------------------------
+
+    private static final class Rule {
+        final String id;
+        final String localName;
+        final String namespace;        // null: cualquiera
+        final String ancestor;         // null: sin condición
+        final String missingAttribute; // null: sin condición
+        final Pattern text;            // null: sin condición
+        final boolean trim;
+        final Action[] actions;
+
+        private Rule(String id, String localName, String namespace, String ancestor, String missingAttribute,
+                     Pattern text, boolean trim, Action[] actions) {
+            this.id = id;
+            this.localName = localName;
+            this.namespace = namespace;
+            this.ancestor = ancestor;
+            this.missingAttribute = missingAttribute;
+            this.text = text;
+            this.trim = trim;
+            this.actions = actions;
+        }
+
+        static Rule parse(String id, JsonNode r, Map<String, String> ns) {
+            JsonNode m = r.path("match");
+            String localName = required(m, "localName");
+            String namespace = optional(m, "namespace");
+            if (namespace != null) namespace = ns.getOrDefault(namespace, namespace);
+            String text = optional(m, "text");
+            JsonNode actions = r.path("actions");
+            if (!actions.isArray() || actions.isEmpty()) throw new IllegalArgumentException("no tiene acciones.");
+            Action[] parsed = new Action[actions.size()];
+            for (int i = 0; i < parsed.length; i++) parsed[i] = Action.parse(actions.get(i), ns);
+            return new Rule(id, localName, namespace, optional(m, "ancestor"), optional(m, "missingAttribute"),
+                    text == null ? null : Pattern.compile(text), m.path("trim").asBoolean(true), parsed);
+        }
+
+        boolean matches(Element e, Walk w) {
+            if (namespace != null && !namespace.equals(e.getNamespaceURI())) return false;
+            if (missingAttribute != null && e.hasAttribute(missingAttribute)) return false;
+            if (ancestor != null && !w.inside(ancestor)) return false;
+            return text == null || text.matcher(text(e)).matches();
+        }
+
+        String text(Element e) {
+            String t = e.getTextContent();
+            return trim ? t.trim() : t;
+        }
+
+        /** @return true si el elemento fue eliminado. */
+        boolean apply(Element e, Walk w) {
+            for (Action a : actions) {
+                if (a.apply(this, e, w)) return true;
+            }
+            return false;
+        }
+    }
+
+    private interface Action {
+        /** @return true si eliminó el elemento. */
+        boolean apply(Rule rule, Element e, Walk w);
+
+        static Action parse(JsonNode a, Map<String, String> ns) {
+            String type = required(a, "type");
+            switch (type) {
+                case "setAttribute": {
+                    String name = required(a, "name");
+                    String value = required(a, "value");
+                    return (rule, e, w) -> {
+                        e.setAttribute(name, value);
+                        return false;
+                    };
+                }
+                case "setText": {
+                    String value = required(a, "value");
+                    return (rule, e, w) -> {
+                        e.setTextContent(value);
+                        return false;
+                    };
+                }
+                case "replaceText": {
+                    Pattern pattern = Pattern.compile(required(a, "pattern"));
+                    String with = a.path("with").asText("");
+                    boolean upper = a.path("upperCase").asBoolean(false);
+                    boolean lower = a.path("lowerCase").asBoolean(false);
+                    return (rule, e, w) -> {
+                        String s = pattern.matcher(rule.text(e)).replaceAll(with);
+                        // Mismo toUpperCase() que el motor STAX (configuración regional por defecto)
+                        if (upper) s = s.toUpperCase();
+                        else if (lower) s = s.toLowerCase();
+                        e.setTextContent(s);
+                        return false;
+                    };
+                }
+                case "truncate": {
+                    int length = a.path("length").asInt(-1);
+                    if (length < 0) throw new IllegalArgumentException("truncate necesita \"length\" >= 0.");
+                    return (rule, e, w) -> {
+                        String s = rule.text(e);
+                        if (s.length() > length) e.setTextContent(s.substring(0, length));
+                        return false;
+                    };
+                }
+                case "remove":
+                    return (rule, e, w) -> {
+                        e.getParentNode().removeChild(e);
+                        return true;
+                    };
+                case "insert":
+                    return new Insert(required(a, "position"), required(a, "xml"), ns);
+                default:
+                    throw new IllegalArgumentException("acción desconocida: " + type);
+            }
+        }
+    }
+
+    /** Bloque XML parseado una vez al cargar; se importa una copia en cada documento. */
+    private static final class Insert implements Action {
+        private final String position;
+        private final List<Node> template = new ArrayList<>();
+
+        Insert(String position, String xml, Map<String, String> ns) {
+            if (!List.of("before", "after", "first", "last").contains(position)) {
+                throw new IllegalArgumentException("insert: posición inválida " + position + " (before|after|first|last).");
+            }
+            this.position = position;
+            StringBuilder wrapped = new StringBuilder("<xmlt-fragment");
+            ns.forEach((prefix, uri) -> wrapped.append(" xmlns:").append(prefix).append("=\"").append(uri).append('"'));
+            wrapped.append('>').append(xml).append("</xmlt-fragment>");
+            try {
+                Document doc = XmlPools.documentBuilder()
+                        .parse(new ByteArrayInputStream(wrapped.toString().getBytes(StandardCharsets.UTF_8)));
+                for (Node n = doc.getDocumentElement().getFirstChild(); n != null; n = n.getNextSibling()) {
+                    if (n.getNodeType() == Node.ELEMENT_NODE) template.add(n);
+                }
+            } catch (Exception ex) {
+                throw new IllegalArgumentException("insert: XML inválido: " + ex.getMessage(), ex);
+            }
+            if (template.isEmpty()) throw new IllegalArgumentException("insert: el XML no tiene elementos.");
+        }
+
+        @Override
+        public boolean apply(Rule rule, Element e, Walk w) {
+            Document doc = e.getOwnerDocument();
+            Node parent = e.getParentNode();
+            Node anchor = switch (position) {
+                case "before" -> e;
+                case "after" -> e.getNextSibling();
+                case "first" -> e.getFirstChild();
+                default -> null; // last
+            };
+            Node target = position.equals("before") || position.equals("after") ? parent : e;
+            for (Node t : template) {
+                Node copy;
+                synchronized (template) { // el DOM de Xerces no garantiza lecturas concurrentes
+                    copy = doc.importNode(t, true);
+                }
+                target.insertBefore(copy, anchor);
+                w.markInserted(copy);
+            }
+            return false;
+        }
+    }
+
+    private static String required(JsonNode n, String field) {
+        String v = optional(n, field);
+        if (v == null) throw new IllegalArgumentException("falta \"" + field + "\".");
+        return v;
+    }
+
+    private static String optional(JsonNode n, String field) {
+        JsonNode v = n.get(field);
+        return v == null || v.isNull() || v.asText().isEmpty() ? null : v.asText();
+    }
+}
@@ -0,0 +1,136 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Escritura por "empalme": copia tal cual (con {@link FileChannel#transferTo}) los bytes del archivo
+ * original y sólo reemplaza el contenido de los {@code Description} cuyo texto cambió.
+ * El sobre AttachedDocument firmado queda idéntico byte a byte y la escritura es casi una copia de memoria.
+ */
+final class SpliceXmlWriter {
+
+    private SpliceXmlWriter() {}
+
+    /**
+     * Escribe {@code modified} en {@code out} empalmando sobre {@code original.source()}.
+     *
+     * @return false si el archivo no admite empalme (encoding, estructura); el llamador debe serializar.
+     */
+    static boolean write(ParsedInvoice original, Document modified, Path out) throws IOException {
+        List<DescriptionRangeScanner.Range> ranges = original.descriptionRanges();
+        if (ranges == null) return false;
+
+        NodeList before = original.outer().getElementsByTagNameNS("*", "Description");
+        NodeList after = modified.getElementsByTagNameNS("*", "Description");
+        if (before.getLength() != ranges.size() || after.getLength() != ranges.size()) return false;
+
+        Map<Integer, String> replacements = new TreeMap<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            Element b = (Element) before.item(i);
+            Element a = (Element) after.item(i);
+            if (!ranges.get(i).qName.equals(b.getNodeName())) return false;
+            if (b.getTextContent().equals(a.getTextContent())) continue;
+            String content = escapedContent(a);
+            if (content == null) return false;
+            replacements.put(i, content);
+        }
+        splice(original.source(), ranges, replacements, out);
+        return true;
+    }
+
+    /**
+     * Modo streaming: reemplaza el contenido de los rangos indicados (índice → texto sin escapar)
+     * conservando la forma original: si el contenido era una sección CDATA se escribe como CDATA.
+     */
+    static void spliceTexts(Path in, List<DescriptionRangeScanner.Range> ranges, Map<Integer, String> texts,
+                            Path out) throws IOException {
+        Map<Integer, String> replacements = new TreeMap<>();
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ)) {
+            for (Map.Entry<Integer, String> e : texts.entrySet()) {
+                String text = e.getValue();
+                StringBuilder sb = new StringBuilder(text.length() + 32);
+                if (isCData(src, ranges.get(e.getKey()))) {
+                    sb.append("<![CDATA[").append(text.replace("]]>", "]]]]><![CDATA[>")).append("]]>");
+                } else {
+                    escapeText(text, sb);
+                }
+                replacements.put(e.getKey(), sb.toString());
+            }
+        }
+        splice(in, ranges, replacements, out);
+    }
+
+    private static boolean isCData(FileChannel src, DescriptionRangeScanner.Range r) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(256, r.end - r.start));
+        while (head.hasRemaining() && src.read(head, r.start + head.position()) > 0) { /* leer cabecera */ }
+        String s = new String(head.array(), 0, head.position(), StandardCharsets.UTF_8).stripLeading();
+        return s.startsWith("<![CDATA[");
+    }
+
+    /** Copia {@code in} en {@code out} reemplazando el contenido de los rangos indicados (índice → texto ya escapado). */
+    static void splice(Path in, List<DescriptionRangeScanner.Range> ranges, Map<Integer, String> replacements,
+                       Path out) throws IOException {
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long pos = 0;
+            for (Map.Entry<Integer, String> e : replacements.entrySet()) {
+                DescriptionRangeScanner.Range r = ranges.get(e.getKey());
+                transfer(src, pos, r.start - pos, dst);
+                ByteBuffer bytes = ByteBuffer.wrap(e.getValue().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) dst.write(bytes);
+                pos = r.end;
+            }
+            transfer(src, pos, src.size() - pos, dst);
+        }
+    }
+
+    private static void transfer(FileChannel src, long pos, long count, FileChannel dst) throws IOException {
+        while (count > 0) {
+            long n = src.transferTo(pos, count, dst);
+            pos += n;
+            count -= n;
+        }
+    }
+
+    /** Contenido del elemento serializado: texto escapado y secciones CDATA conservadas; null si tiene hijos elemento. */
+    private static String escapedContent(Element e) {
+        StringBuilder sb = new StringBuilder();
+        for (Node c = e.getFirstChild(); c != null; c = c.getNextSibling()) {
+            switch (c.getNodeType()) {
+                case Node.CDATA_SECTION_NODE ->
+                        sb.append("<![CDATA[").append(c.getNodeValue().replace("]]>", "]]]]><![CDATA[>")).append("]]>");
+                case Node.TEXT_NODE -> escapeText(c.getNodeValue(), sb);
+                case Node.COMMENT_NODE -> sb.append("<!--").append(c.getNodeValue()).append("-->");
+                default -> { return null; }
+            }
+        }
+        return sb.toString();
+    }
+
+    static void escapeText(String s, StringBuilder sb) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '&' -> sb.append("&amp;");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '\r' -> sb.append("&#13;");
+                default -> sb.append(ch);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package xml.json.transformer.application;
+
+/**
+ * Etapas del procesamiento que mide {@link StageMetrics}. Las reglas A–H se aplican en un solo recorrido
+ * ({@link RuleSet}) y cuentan juntas en {@link #RULES}; con el motor STAX cuentan en {@link #STAX_REWRITE} y con el
+ * XSLT en {@link #XSLT_TRANSFORM} (la serialización de este último va aparte, en {@link #SERIALIZE}).
+ */
+public enum Stage {
+    READ_XML("Lectura y parseo del AttachedDocument"),
+    PREFILL("Campos del cuestionario: una pasada por documento"),
+    EXTRACT_EMBEDDED("Parseo de un Invoice embebido"),
+    RULES("A–H: reglas declarativas, un recorrido"),
+    STEP_F("F: insertar InvoicePeriod"),
+    STAX_REWRITE("Motor STAX: A–H + F en una pasada"),
+    XSLT_TRANSFORM("Motor XSLT: A–H + F con la hoja precompilada"),
+    SERIALIZE("Serialización del Invoice embebido"),
+    WRITE_JSON("Escritura del JSON"),
+    WRITE_XML("Escritura del XML"),
+    INVOICE("Factura completa (incluye el cuestionario)");
+
+    private final String description;
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    Stage(String description) {
+        this.description = description;
+    }
+
+    public String description() {
+        return description;
+    }
+}
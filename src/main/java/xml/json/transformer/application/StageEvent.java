@@ -0,0 +1,138 @@
+package xml.json.transformer.application;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Evento JFR de una etapa del pipeline ({@link Stage}), para ver lectura, reglas, serialización y escritura
+ * junto a GC y asignaciones en una grabación. Viene deshabilitado; se activa con el perfil {@code xmlt.jfc}:
+ * <pre>{@code -XX:StartFlightRecording:settings=default,settings=/ruta/xmlt.jfc,filename=batch.jfr}</pre>
+ * El pipeline no lo usa directamente sino con {@link StageTimer}, que registra a la vez la latencia en
+ * {@link StageMetrics}. Con el evento apagado {@code shouldCommit()} es falso y los atributos (conteo de nodos,
+ * tamaños) no se calculan; lo que queda es crear el objeto del evento en cada etapa.
+ */
+@Name(StageEvent.NAME)
+@Label("Etapa XML Transformer")
+@Category("XML Transformer")
+@Description("Duración de una etapa del procesamiento de un AttachedDocument")
+@Enabled(false)
+@StackTrace(false)
+public final class StageEvent extends Event {
+
+    public static final String NAME = "xml.json.transformer.Stage";
+
+    /** Factura que procesa el hilo actual; la fija {@link InvoiceProcessor} en cuanto la conoce. */
+    private static final ThreadLocal<String> FACTURA = new ThreadLocal<>();
+
+    @Label("Etapa")
+    String stage;
+
+    @Label("Factura")
+    String factura;
+
+    @Label("Tamaño")
+    @Description("Bytes leídos o escritos por la etapa (UTF-8 para contenido en memoria)")
+    @DataAmount
+    long bytes;
+
+    @Label("Elementos")
+    @Description("Elementos del documento al terminar la etapa")
+    int nodes;
+
+    @Label("Invoices embebidos")
+    int embedded;
+
+    static void setFactura(String factura) {
+        FACTURA.set(factura);
+    }
+
+    static String currentFactura() {
+        return FACTURA.get();
+    }
+
+    static void clearFactura() {
+        FACTURA.remove();
+    }
+
+    static StageEvent start() {
+        StageEvent e = new StageEvent();
+        e.begin();
+        return e;
+    }
+
+    /** Cierra una etapa sobre {@code doc} y abre el evento de la siguiente. */
+    StageEvent next(Stage stage, Document doc) {
+        finish(stage, doc, 0);
+        return start();
+    }
+
+    /** @param bytes tamaño procesado, o 0 si no aplica. */
+    void finish(Stage stage, Document doc, long bytes) {
+        end();
+        if (!shouldCommit()) return;
+        fill(stage, doc, bytes, stage == Stage.READ_XML && doc != null ? countEmbedded(doc) : 0);
+        commit();
+    }
+
+    /** Tamaño del archivo leído o escrito. */
+    void finish(Stage stage, Document doc, Path file) {
+        end();
+        if (!shouldCommit()) return;
+        fill(stage, doc, sizeOf(file), stage == Stage.READ_XML && doc != null ? countEmbedded(doc) : 0);
+        commit();
+    }
+
+    /** Tamaño en UTF-8 del texto producido o consumido. */
+    void finish(Stage stage, String text) {
+        end();
+        if (!shouldCommit()) return;
+        fill(stage, null, text == null ? 0 : text.getBytes(StandardCharsets.UTF_8).length, 0);
+        commit();
+    }
+
+    /** Lectura sin DOM externo (modo streaming): los Invoice embebidos se contaron al recorrer el archivo. */
+    void finish(Stage stage, Path file, int embeddedCount) {
+        end();
+        if (!shouldCommit()) return;
+        fill(stage, null, sizeOf(file), embeddedCount);
+        commit();
+    }
+
+    private void fill(Stage stage, Document doc, long bytes, int embeddedCount) {
+        this.stage = stage.name();
+        this.factura = FACTURA.get();
+        this.bytes = bytes;
+        this.nodes = doc == null ? 0 : doc.getElementsByTagName("*").getLength();
+        this.embedded = embeddedCount;
+    }
+
+    private static int countEmbedded(Document outer) {
+        NodeList descriptions = outer.getElementsByTagNameNS(XPathRegistry.NS.get("cbc"), "Description");
+        int n = 0;
+        for (int i = 0; i < descriptions.getLength(); i++) {
+            if (descriptions.item(i).getTextContent().contains("<Invoice")) n++;
+        }
+        return n;
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package xml.json.transformer.application;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Conteo y latencia (p50/p95/p99) por {@link Stage}, publicados como MBeans en
+ * {@code xml.json.transformer:type=Stage,name=<STAGE>} para verlos con JConsole o cualquier cliente JMX
+ * durante un batch o la vigilancia. Uso en la ruta caliente:
+ * <pre>{@code
+ * long t0 = StageMetrics.start();
+ * ...
+ * StageMetrics.stop(Stage.RULES, t0);
+ * }</pre>
+ * Registrar cuesta dos {@code nanoTime} y unos incrementos atómicos (ver {@link LatencyHistogram}), así que
+ * queda activo siempre; {@code -Dxmlt.metrics=false} lo apaga por completo.
+ */
+public final class StageMetrics {
+
+    public static final String DOMAIN = "xml.json.transformer";
+
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("xmlt.metrics"));
+
+    static {
+        if (ENABLED) register();
+    }
+
+    private StageMetrics() {}
+
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    public static void stop(Stage stage, long startNanos) {
+        if (ENABLED) stage.histogram.record(System.nanoTime() - startNanos);
+    }
+
+    /** Registra la etapa que termina ahora y devuelve el inicio de la siguiente (un solo {@code nanoTime}). */
+    public static long lap(Stage stage, long startNanos) {
+        if (!ENABLED) return 0L;
+        long now = System.nanoTime();
+        stage.histogram.record(now - startNanos);
+        return now;
+    }
+
+    public static ObjectName objectName(Stage stage) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Stage,name=" + stage.name());
+    }
+
+    /** Tabla con las etapas que tienen registros, para el resumen del batch. */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder("Etapas (ms)          :      n      p50      p95      p99      max");
+        for (Stage s : Stage.values()) {
+            LatencyHistogram h = s.histogram;
+            long n = h.count();
+            if (n == 0) continue;
+            sb.append(String.format(Locale.ROOT, "%n  %-18s : %6d %8.3f %8.3f %8.3f %8.3f", s.name(), n,
+                    millis(h.percentile(0.50)), millis(h.percentile(0.95)), millis(h.percentile(0.99)), millis(h.maxNanos())));
+        }
+        return sb.toString();
+    }
+
+    /** Vacía todas las etapas (p. ej. después del precalentamiento, para que no cuente como trabajo real). */
+    static void reset() {
+        for (Stage s : Stage.values()) s.histogram.reset();
+    }
+
+    private static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (Stage s : Stage.values()) {
+                ObjectName name = objectName(s);
+                if (!server.isRegistered(name)) server.registerMBean(new StageStats(s), name);
+            }
+        } catch (JMException | SecurityException e) {
+            // Sin JMX se sigue midiendo: el resumen del batch sigue disponible
+            System.err.println("⚠️ No se pudieron registrar las métricas JMX: " + e);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class StageStats implements StageStatsMXBean {
+        private final Stage stage;
+
+        StageStats(Stage stage) {
+            this.stage = stage;
+        }
+
+        @Override public String getDescription() { return stage.description(); }
+        @Override public long getCount() { return stage.histogram.count(); }
+        @Override public double getTotalMillis() { return millis(stage.histogram.totalNanos()); }
+        @Override public double getP50Millis() { return millis(stage.histogram.percentile(0.50)); }
+        @Override public double getP95Millis() { return millis(stage.histogram.percentile(0.95)); }
+        @Override public double getP99Millis() { return millis(stage.histogram.percentile(0.99)); }
+        @Override public double getMaxMillis() { return millis(stage.histogram.maxNanos()); }
+        @Override public void reset() { stage.histogram.reset(); }
+
+        @Override
+        public double getMeanMillis() {
+            long n = stage.histogram.count();
+            return n == 0 ? 0 : millis(stage.histogram.totalNanos()) / n;
+        }
+    }
+}
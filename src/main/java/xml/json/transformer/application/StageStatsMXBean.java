@@ -0,0 +1,27 @@
+package xml.json.transformer.application;
+
+/**
+ * Vista JMX de una {@link Stage}: {@code xml.json.transformer:type=Stage,name=<STAGE>}.
+ * Los tiempos van en milisegundos; los percentiles tienen la resolución de {@link LatencyHistogram}.
+ */
+public interface StageStatsMXBean {
+
+    String getDescription();
+
+    long getCount();
+
+    double getTotalMillis();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    /** Pone la etapa en cero (p. ej. para medir sólo el tramo que sigue). */
+    void reset();
+}
@@ -0,0 +1,58 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Document;
+
+import java.nio.file.Path;
+
+/**
+ * Mide una etapa en los dos lados a la vez: latencia en {@link StageMetrics} (JMX) y evento en {@link StageEvent}
+ * (JFR). Uso: {@code StageTimer t = StageTimer.start(); ...; t.stop(Stage.X, doc, bytes);}; con varias etapas
+ * seguidas, {@link #lap} cierra una y abre la siguiente desde el mismo instante.
+ * <p>
+ * Los {@code stop} tienen las mismas variantes que {@code StageEvent.finish}: los atributos del evento sólo se
+ * calculan si se va a grabar.
+ */
+final class StageTimer {
+
+    private long startNanos;
+    private StageEvent event;
+
+    private StageTimer() {
+        this.startNanos = StageMetrics.start();
+        this.event = StageEvent.start();
+    }
+
+    static StageTimer start() {
+        return new StageTimer();
+    }
+
+    /** Cierra {@code stage} sobre {@code doc} y empieza a medir la siguiente. */
+    void lap(Stage stage, Document doc) {
+        startNanos = StageMetrics.lap(stage, startNanos);
+        event = event.next(stage, doc);
+    }
+
+    /** @param bytes tamaño procesado, o 0 si no aplica. */
+    void stop(Stage stage, Document doc, long bytes) {
+        StageMetrics.stop(stage, startNanos);
+        event.finish(stage, doc, bytes);
+    }
+
+    /** Tamaño del archivo leído o escrito. */
+    void stop(Stage stage, Document doc, Path file) {
+        StageMetrics.stop(stage, startNanos);
+        event.finish(stage, doc, file);
+    }
+
+    /** Tamaño en UTF-8 del texto producido o consumido. */
+    void stop(Stage stage, String text) {
+        StageMetrics.stop(stage, startNanos);
+        event.finish(stage, text);
+    }
+
+    /** Lectura sin DOM externo (modo streaming): los Invoice embebidos se contaron al recorrer el archivo. */
+    void stop(Stage stage, Path file, int embeddedCount) {
+        StageMetrics.stop(stage, startNanos);
+        event.finish(stage, file, embeddedCount);
+    }
+}
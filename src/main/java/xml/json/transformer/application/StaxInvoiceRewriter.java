@@ -0,0 +1,508 @@
+package xml.json.transformer.application;
+
+import javax.xml.stream.*;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Motor STAX: aplica las reglas A–H y el paso F sobre el Invoice embebido en UNA sola pasada
+ * {@link XMLStreamReader} → {@link InnerXmlOutput}, sin construir DOM.
+ * <p>
+ * Mismas reglas que el motor DOM de {@link XmlAdapterService}:
+ * <ul>
+ *   <li>A: {@code Group} sin {@code schemeName} → {@code schemeName="Sector Salud"}.</li>
+ *   <li>B/D/H: se eliminan {@code Id}, {@code TotalesCop} y {@code cac:PrepaidPayment} (con su contenido).</li>
+ *   <li>C: {@code Name} dentro de {@code Interoperabilidad} → espacios a "_" y mayúsculas.</li>
+ *   <li>E1: {@code cbc:CustomizationID} = 10 → {@code SS-SinAporte}.</li>
+ *   <li>E2/G: {@code Value} con cobertura/modalidad recibe schemeID/schemeName; 12+ dígitos se truncan a 10.</li>
+ *   <li>F: {@code cac:InvoicePeriod} justo después del primer {@code cbc:UBLVersionID}.</li>
+ * </ul>
+ * La salida es la de {@link InnerXmlWriter} sobre el DOM transformado, byte a byte: misma declaración, escapes,
+ * namespaces y líneas en blanco (el mismo {@link InnerXmlOutput}), atributos en el orden del DOM (xmlns primero,
+ * luego por nombre) y la misma indentación. Para indentar igual, los textos de cada elemento se retienen hasta
+ * saber si tiene hijos elemento, comentario o PI (cada hijo en su línea) o sólo texto (en línea).
+ * <p>
+ * Los elementos hoja que dependen de su texto (Value, Name, CustomizationID) se retienen hasta su cierre, con sus
+ * comentarios y PI: si la regla reescribe el texto se pierden (como con {@code setTextContent}), si no se escriben
+ * en su sitio. Única diferencia conocida con DOM: si una de esas hojas resulta tener hijos elemento (contenido
+ * mixto, no ocurre en UBL) se copia sin aplicar la regla, mientras que DOM la evalúa sobre todo su texto.
+ */
+final class StaxInvoiceRewriter {
+
+    private static final String CBC = XPathRegistry.NS.get("cbc");
+    private static final String CAC = XPathRegistry.NS.get("cac");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern LONG_DIGITS = Pattern.compile("\\d{12,}");
+
+    private static final ThreadLocal<InnerXmlOutput> OUTPUT = ThreadLocal.withInitial(InnerXmlOutput::new);
+
+    /**
+     * Reescribe el Invoice (sin declaración XML).
+     *
+     * @return el XML resultante con un salto de línea al inicio y al final, como {@link InnerXmlWriter#write}.
+     */
+    String rewrite(String innerXml, String fechaSuministro) throws Exception {
+        InvoicePeriod period = (fechaSuministro == null || fechaSuministro.isBlank())
+                ? null : InvoicePeriod.from(fechaSuministro);
+
+        InnerXmlOutput out = OUTPUT.get();
+        XMLStreamReader r = XmlPools.staxInputFactory().createXMLStreamReader(new StringReader(innerXml));
+        String result;
+        try {
+            out.begin();
+            new Pass(r, out, period).run();
+            result = out.finish();
+        } finally {
+            r.close();
+            out.reset();
+        }
+        if (period != null) {
+            System.out.println("🧩 Bloque <cac:InvoicePeriod> generado usando la fecha " + fechaSuministro);
+        }
+        return result;
+    }
+
+    // ------------------------------------------------------------------
+    // Estado de una pasada
+    // ------------------------------------------------------------------
+    private enum LeafKind { VALUE, NAME, CUSTOMIZATION_ID }
+
+    /**
+     * Hijo retenido: nodo de texto (los CHARACTERS seguidos forman uno solo, como en DOM), sección CDATA, comentario
+     * o PI.
+     */
+    private static final class Child {
+        final int type;     // CHARACTERS, CDATA, COMMENT o PROCESSING_INSTRUCTION
+        final String value; // texto, comentario o destino de la PI
+        final String data;  // datos de la PI
+
+        private Child(int type, String value, String data) {
+            this.type = type;
+            this.value = value;
+            this.data = data;
+        }
+
+        static Child text(String value) { return new Child(XMLStreamConstants.CHARACTERS, value, null); }
+
+        static Child cdata(String value) { return new Child(XMLStreamConstants.CDATA, value, null); }
+
+        static Child comment(String value) { return new Child(XMLStreamConstants.COMMENT, value, null); }
+
+        static Child pi(String target, String data) {
+            return new Child(XMLStreamConstants.PROCESSING_INSTRUCTION, target, data);
+        }
+
+        boolean isText() { return type == XMLStreamConstants.CHARACTERS || type == XMLStreamConstants.CDATA; }
+
+        /** Texto en blanco que la indentación omite; una CDATA nunca lo es. */
+        boolean isBlankText() { return type == XMLStreamConstants.CHARACTERS && InnerXmlOutput.isBlank(value); }
+    }
+
+    /** Etiqueta de apertura todavía sin escribir: nombre, declaraciones y atributos. */
+    private static final class Start {
+        final String qname, namespace;
+        final List<String[]> namespaces; // {prefix, uri}
+        final List<String[]> attributes; // {qname, uri, value}
+
+        Start(String qname, String namespace) {
+            this.qname = qname;
+            this.namespace = namespace;
+            this.namespaces = new ArrayList<>(0);
+            this.attributes = new ArrayList<>(2);
+        }
+
+        Start(XMLStreamReader r) {
+            this.qname = qualified(r.getPrefix(), r.getLocalName());
+            this.namespace = r.getNamespaceURI();
+            int nsCount = r.getNamespaceCount();
+            this.namespaces = new ArrayList<>(nsCount);
+            for (int i = 0; i < nsCount; i++) {
+                String prefix = r.getNamespacePrefix(i);
+                String uri = r.getNamespaceURI(i);
+                namespaces.add(new String[]{prefix == null ? "" : prefix, uri == null ? "" : uri});
+            }
+            int count = r.getAttributeCount();
+            this.attributes = new ArrayList<>(count + 2);
+            for (int i = 0; i < count; i++) {
+                attributes.add(new String[]{qualified(r.getAttributePrefix(i), r.getAttributeLocalName(i)),
+                        r.getAttributeNamespace(i), r.getAttributeValue(i)});
+            }
+        }
+
+        boolean hasAttribute(String name) {
+            for (String[] a : attributes) {
+                if (name.equals(a[0])) return true;
+            }
+            return false;
+        }
+
+        /** Equivalente a {@code Element.setAttribute(name, value)}. */
+        void setAttribute(String name, String value) {
+            for (String[] a : attributes) {
+                if (name.equals(a[0])) { a[2] = value; return; }
+            }
+            attributes.add(new String[]{name, null, value});
+        }
+    }
+
+    /** Elemento hoja retenido hasta su cierre, con sus hijos de texto, comentarios y PI. */
+    private static final class Leaf {
+        final LeafKind kind;
+        final int depth;
+        final Start start;
+        final List<Child> children = new ArrayList<>(1);
+
+        Leaf(LeafKind kind, int depth, Start start) {
+            this.kind = kind;
+            this.depth = depth;
+            this.start = start;
+        }
+
+        /** Lo que devolvería {@code getTextContent()}: sólo texto y CDATA. */
+        String text() {
+            if (children.size() == 1 && children.get(0).isText()) return children.get(0).value;
+            StringBuilder sb = new StringBuilder();
+            for (Child c : children) {
+                if (c.isText()) sb.append(c.value);
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Elemento ya abierto en la salida. Mientras sólo tenga texto, el texto se retiene. */
+    private static final class Open {
+        final String qname;
+        final int scope, level;
+        boolean started;    // ya se escribió el '>'
+        boolean structured; // tiene hijos elemento, comentario o PI: cada hijo va en su línea
+        final List<Child> texts = new ArrayList<>(1);
+
+        Open(String qname, int scope, int level) {
+            this.qname = qname;
+            this.scope = scope;
+            this.level = level;
+        }
+    }
+
+    private static final class Pass {
+        private final XMLStreamReader r;
+        private final InnerXmlOutput out;
+        private final InvoicePeriod period;
+
+        private int depth;
+        private int skipDepth = -1;            // >0 mientras se omite un subárbol eliminado
+        private final BitSet interop = new BitSet(); // profundidades con <Interoperabilidad> abierto
+        private Leaf leaf;
+
+        private final List<Open> open = new ArrayList<>();
+        private final StringBuilder chars = new StringBuilder();
+        private boolean hasChars;
+
+        private boolean periodDone, periodPending;
+
+        Pass(XMLStreamReader r, InnerXmlOutput out, InvoicePeriod period) {
+            this.r = r;
+            this.out = out;
+            this.period = period;
+            this.periodDone = period == null;
+        }
+
+        void run() throws XMLStreamException {
+            while (r.hasNext()) {
+                switch (r.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> startElement();
+                    case XMLStreamConstants.END_ELEMENT -> endElement();
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE -> {
+                        if (skipping() || depth == 0) break;
+                        chars.append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+                        hasChars = true;
+                    }
+                    case XMLStreamConstants.CDATA -> {
+                        if (skipping() || depth == 0) break;
+                        flushText();
+                        text(Child.cdata(r.getText()));
+                    }
+                    case XMLStreamConstants.COMMENT -> {
+                        if (!skipping()) node(Child.comment(r.getText()));
+                    }
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION -> {
+                        if (!skipping()) node(Child.pi(r.getPITarget(), r.getPIData()));
+                    }
+                    default -> { /* DTD, START/END_DOCUMENT: nada que copiar */ }
+                }
+            }
+        }
+
+        private boolean skipping() { return skipDepth > 0; }
+
+        /**
+         * Comentario o PI. Dentro de una hoja se retiene con su texto: si la regla reescribe el texto desaparece
+         * (como con {@code setTextContent}), si no se escribe en su sitio.
+         */
+        private void node(Child c) {
+            flushText();
+            if (leaf != null) {
+                leaf.children.add(c);
+                return;
+            }
+            flushPendingPeriod();
+            structuredChild();
+            write(c);
+        }
+
+        private void startElement() {
+            depth++;
+            if (skipping()) return;
+            flushText();
+            if (leaf != null) flushLeaf(); // contenido mixto: se copia tal cual
+
+            String local = r.getLocalName();
+            String ns = r.getNamespaceURI();
+
+            flushPendingPeriod();
+
+            // B, D, H: eliminar el subárbol completo
+            if ("Id".equals(local) || "TotalesCop".equals(local) || ("PrepaidPayment".equals(local) && CAC.equals(ns))) {
+                skipDepth = depth;
+                return;
+            }
+
+            if ("Interoperabilidad".equals(local)) interop.set(depth);
+
+            if ("Value".equals(local)) {
+                leaf = new Leaf(LeafKind.VALUE, depth, new Start(r));
+            } else if ("CustomizationID".equals(local) && CBC.equals(ns)) {
+                leaf = new Leaf(LeafKind.CUSTOMIZATION_ID, depth, new Start(r));
+            } else if ("Name".equals(local) && !interop.isEmpty()) {
+                leaf = new Leaf(LeafKind.NAME, depth, new Start(r));
+            } else {
+                Start start = new Start(r);
+                // A: Group sin schemeName
+                if ("Group".equals(local) && !start.hasAttribute("schemeName")) {
+                    start.setAttribute("schemeName", "Sector Salud");
+                }
+                open(start);
+            }
+        }
+
+        private void endElement() {
+            if (skipping()) {
+                if (depth == skipDepth) skipDepth = -1;
+                depth--;
+                return;
+            }
+            flushText();
+            if (leaf != null && leaf.depth == depth) {
+                writeLeaf(leaf);
+                leaf = null;
+            } else {
+                flushPendingPeriod(); // appendChild si UBLVersionID era el último hijo
+                close();
+            }
+            interop.clear(depth);
+
+            if (!periodDone && "UBLVersionID".equals(r.getLocalName()) && CBC.equals(r.getNamespaceURI())) {
+                periodDone = true;
+                periodPending = true;
+            }
+            depth--;
+        }
+
+        /** Cierra el nodo de texto en curso: termina en cualquier evento que no sea texto. */
+        private void flushText() {
+            if (!hasChars) return;
+            String value = chars.toString();
+            chars.setLength(0);
+            hasChars = false;
+            text(Child.text(value));
+        }
+
+        private void text(Child t) {
+            if (leaf != null) {
+                leaf.children.add(t);
+                return;
+            }
+            // Paso F: insertBefore del primer hermano que no sea texto en blanco
+            if (t.type == XMLStreamConstants.CDATA || !t.value.trim().isEmpty()) flushPendingPeriod();
+            textChild(current(), t);
+        }
+
+        // --------------------------------------------------------------
+        // Reglas sobre hojas
+        // --------------------------------------------------------------
+        private void writeLeaf(Leaf l) {
+            String content = l.text();
+            String replaced = null; // equivalente a setTextContent(replaced)
+            switch (l.kind) {
+                case VALUE -> {
+                    String text = content.trim();
+                    if (text.equalsIgnoreCase("Cobertura Póliza SOAT")) {
+                        l.start.setAttribute("schemeID", "10");
+                        l.start.setAttribute("schemeName", "salud_cobertuta.gc");
+                    } else if (text.equalsIgnoreCase("Pago por evento")) {
+                        l.start.setAttribute("schemeID", "04");
+                        l.start.setAttribute("schemeName", "salud_modalidad_pago.gc");
+                    }
+                    if (LONG_DIGITS.matcher(content).matches()) replaced = content.substring(0, 10);
+                }
+                case CUSTOMIZATION_ID -> {
+                    if ("10".equals(content.trim())) replaced = "SS-SinAporte";
+                }
+                case NAME -> replaced = WHITESPACE.matcher(content.trim()).replaceAll("_").toUpperCase();
+            }
+            Open e = open(l.start);
+            if (replaced == null) {
+                for (Child c : l.children) child(e, c);
+            } else if (!replaced.isEmpty()) {
+                textChild(e, Child.text(replaced));
+            }
+            close();
+        }
+
+        /** Contenido mixto dentro de una hoja: se abre con lo retenido, sin aplicar la regla. */
+        private void flushLeaf() {
+            Leaf l = leaf;
+            leaf = null;
+            Open e = open(l.start);
+            for (Child c : l.children) child(e, c);
+        }
+
+        /** Paso F: se emite antes del siguiente nodo no-blanco tras el primer {@code cbc:UBLVersionID}. */
+        private void flushPendingPeriod() {
+            if (!periodPending) return;
+            periodPending = false;
+
+            // Mismos nombres que createElementNS en el motor DOM: prefijos cac/cbc, declarados si hace falta
+            open(new Start("cac:InvoicePeriod", CAC));
+            periodChild("cbc:StartDate", period.startDate);
+            periodChild("cbc:StartTime", InvoicePeriod.TIME);
+            periodChild("cbc:EndDate", period.endDate);
+            periodChild("cbc:EndTime", InvoicePeriod.TIME);
+            close();
+        }
+
+        private void periodChild(String qname, String value) {
+            textChild(open(new Start(qname, CBC)), Child.text(value));
+            close();
+        }
+
+        // --------------------------------------------------------------
+        // Escritura con la indentación de InnerXmlWriter
+        // --------------------------------------------------------------
+        private Open current() {
+            return open.isEmpty() ? null : open.get(open.size() - 1);
+        }
+
+        /** Escribe la etiqueta de apertura (sin el '>') con los namespaces y atributos en el orden del DOM. */
+        private Open open(Start s) {
+            structuredChild();
+            int scope = out.scope();
+            String qname = s.qname;
+            out.startTag(qname);
+
+            // El DOM guarda los atributos ordenados por nombre; InnerXmlWriter escribe primero los xmlns
+            if (s.namespaces.size() > 1) s.namespaces.sort((a, b) -> a[0].compareTo(b[0]));
+            for (String[] n : s.namespaces) out.declare(n[0], 0, n[0].length(), n[1]);
+            if (s.attributes.size() > 1) s.attributes.sort((a, b) -> a[0].compareTo(b[0]));
+            for (String[] a : s.attributes) {
+                String name = a[0];
+                int colon = name.indexOf(':');
+                if (!isEmpty(a[1]) && colon > 0) out.declare(name, 0, colon, a[1]);
+                out.attribute(name, a[2]);
+            }
+            if (!isEmpty(s.namespace)) {
+                int colon = qname.indexOf(':');
+                out.declare(qname, 0, Math.max(colon, 0), s.namespace);
+            } else {
+                out.declare(qname, 0, 0, ""); // sin namespace bajo un xmlns por defecto: se anula
+            }
+
+            Open e = new Open(qname, scope, open.size());
+            open.add(e);
+            return e;
+        }
+
+        private void close() {
+            Open e = open.remove(open.size() - 1);
+            if (e.structured) {
+                out.newline();
+                out.indent(e.level);
+                out.closeTag(e.qname);
+            } else if (!e.started) {
+                out.markup("/>");
+            } else {
+                for (Child t : e.texts) write(t);
+                out.closeTag(e.qname);
+            }
+            out.endScope(e.scope);
+        }
+
+        /** Antes de un hijo elemento, comentario o PI: el padre pasa a un hijo por línea. */
+        private void structuredChild() {
+            Open p = current();
+            if (p == null) return; // nivel del documento: sin saltos, como InnerXmlWriter
+            if (!p.structured) {
+                if (!p.started) {
+                    out.markup(">");
+                    p.started = true;
+                }
+                p.structured = true;
+                for (Child t : p.texts) {
+                    if (t.isBlankText()) continue;
+                    out.newline();
+                    out.indent(p.level + 1);
+                    write(t);
+                }
+                p.texts.clear();
+            }
+            out.newline();
+            out.indent(p.level + 1);
+        }
+
+        /** Hijo retenido de una hoja, ya abierta como {@code e}. */
+        private void child(Open e, Child c) {
+            if (c.isText()) {
+                textChild(e, c);
+            } else {
+                structuredChild();
+                write(c);
+            }
+        }
+
+        private void textChild(Open p, Child t) {
+            if (p == null) return; // el DOM no tiene texto fuera del elemento raíz
+            if (!p.started) {
+                out.markup(">");
+                p.started = true;
+            }
+            if (!p.structured) {
+                p.texts.add(t);
+            } else if (!t.isBlankText()) {
+                out.newline();
+                out.indent(p.level + 1);
+                write(t);
+            }
+        }
+
+        private void write(Child c) {
+            switch (c.type) {
+                case XMLStreamConstants.CDATA -> out.cdata(c.value);
+                case XMLStreamConstants.COMMENT -> out.comment(c.value);
+                case XMLStreamConstants.PROCESSING_INSTRUCTION -> out.processingInstruction(c.value, c.data);
+                default -> out.text(c.value);
+            }
+        }
+    }
+
+    private static String qualified(String prefix, String local) {
+        return isEmpty(prefix) ? local : prefix + ":" + local;
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+}
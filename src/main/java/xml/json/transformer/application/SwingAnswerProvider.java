@@ -0,0 +1,354 @@
+package xml.json.transformer.application;
+
+import com.toedter.calendar.JDateChooser;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.awt.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.InvocationTargetException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Cuestionario Swing (el de siempre) dividido en 2 paneles horizontales:
+ * IZQ (formulario JSON) / DER (mensaje+IssueDate+Periodo).
+ * No se cierra mientras las respuestas no pasen {@link Answers#validate}.
+ */
+public class SwingAnswerProvider implements AnswerProvider {
+
+    // En modo batch varios hilos llegan aquí: se muestra un cuestionario a la vez
+    private static final Object QUESTIONNAIRE_LOCK = new Object();
+
+    /**
+     * El formulario siempre se arma y se muestra en el EDT: desde otro hilo (el {@code SwingWorker} de la
+     * interfaz o un hilo del batch) se espera con {@link SwingUtilities#invokeAndWait}. Si el hilo que espera
+     * es interrumpido, cuenta como cancelado.
+     */
+    @Override
+    public Answers answersFor(PrefillFields xml, LocalDate issueDate) {
+        // En el EDT no se toma el lock: un hilo que lo tiene puede estar esperando al propio EDT
+        if (SwingUtilities.isEventDispatchThread()) return showQuestionnaire(xml, issueDate);
+        synchronized (QUESTIONNAIRE_LOCK) {
+            Answers[] result = new Answers[1];
+            try {
+                SwingUtilities.invokeAndWait(() -> result[0] = showQuestionnaire(xml, issueDate));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                if (e.getCause() instanceof Error err) throw err;
+                throw new IllegalStateException(e.getCause());
+            }
+            return result[0];
+        }
+    }
+
+    private Answers showQuestionnaire(PrefillFields xml, LocalDate issueDate) {
+        String nitObligado = xml.nitObligado;
+        String parentDocID = xml.parentDocumentId;
+        String noteHeader = xml.noteHeader;
+        String codPrestador = xml.codPrestador;
+        String numAutorizacion = xml.numAutorizacion;
+        String def_codTec = xml.codTecnologia;
+        String def_nomTec = xml.nomTecnologia;
+        int def_vr = xml.valor;
+        String def_numDocServicio = xml.docIdentServicio;
+
+        // defaults
+        String  d_tipoUsuario = Defaults.TIPO_USUARIO;
+        String  d_codPais = Defaults.COD_PAIS_RESIDENCIA;
+        String  d_mun = Defaults.COD_MPIO_RESIDENCIA;
+        String  d_zona = Defaults.COD_ZONA_TERRITORIAL;
+        String  d_incap = Defaults.INCAPACIDAD[0];
+        String  d_paisOrigen = Defaults.COD_PAIS_ORIGEN;
+        Integer d_consec = Defaults.CONSECUTIVO;
+
+        String  d_tipoOS = Defaults.TIPO_OS;
+        String  d_concepto = Defaults.CONCEPTO_RECAUDO;
+        Integer d_valorPagoMod = Defaults.VALOR_PAGO_MODERADOR;
+        Integer d_consecServ = Defaults.CONSECUTIVO;
+
+        // ------------------ PANEL IZQUIERDO: FORM ------------------
+        JPanel form = new JPanel(new GridBagLayout());
+        GridBagConstraints c = new GridBagConstraints();
+        c.insets = new Insets(6, 8, 6, 8);
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.weightx = 1;
+        int r = 0;
+
+        r = row(form, c, r, "numDocumentoIdObligado (XML schemeID=8):", ro(nitObligado));
+        r = row(form, c, r, "numFactura (ParentDocumentID XML):", ro(parentDocID));
+
+        JTextField tfTipoNota = txt(null);
+        JTextField tfNumNota = txt(null);
+        r = row(form, c, r, "tipoNota (opcional):", tfTipoNota);
+        r = row(form, c, r, "numNota (opcional):", tfNumNota);
+
+        JComboBox<String> cbUserTipoDoc = new JComboBox<>(new String[]{"CC","CE","TI","PA","RC","NIT","DNI","PS"});
+        cbUserTipoDoc.setSelectedItem("CC");
+        r = row(form, c, r, "tipoDocumentoIdentificacion (usuario):", cbUserTipoDoc);
+
+        JTextField tfUserNumDoc = txt("");
+        r = row(form, c, r, "numDocumentoIdentificacion (usuario):", tfUserNumDoc);
+
+        JTextField tfTipoUsuario = txt(d_tipoUsuario);
+        r = row(form, c, r, "tipoUsuario:", tfTipoUsuario);
+
+        // fechaNacimiento
+        JDateChooser dcNacimiento = new JDateChooser();
+        dcNacimiento.setDateFormatString("yyyy-MM-dd");
+        // Bloquear hoy/futuro
+        Calendar lim = Calendar.getInstance();
+        lim.set(Calendar.HOUR_OF_DAY, 0);
+        lim.set(Calendar.MINUTE, 0);
+        lim.set(Calendar.SECOND, 0);
+        lim.set(Calendar.MILLISECOND, 0);
+        dcNacimiento.setMaxSelectableDate(new Date(lim.getTimeInMillis() - 1));
+        r = row(form, c, r, "fechaNacimiento (calendario):", dcNacimiento);
+
+        JComboBox<String> cbSexo = new JComboBox<>(new String[]{"M","F"});
+        cbSexo.setSelectedItem("M");
+        r = row(form, c, r, "codSexo:", cbSexo);
+
+        JTextField tfCodPais = txt(d_codPais);
+        JTextField tfMun = txt(d_mun);
+        JTextField tfZona = txt(d_zona);
+        r = row(form, c, r, "codPaisResidencia:", tfCodPais);
+        r = row(form, c, r, "codMunicipioResidencia:", tfMun);
+        r = row(form, c, r, "codZonaTerritorialResidencia:", tfZona);
+
+        JComboBox<String> cbIncap = new JComboBox<>(new String[]{"NO","SI"});
+        cbIncap.setSelectedItem(d_incap);
+        r = row(form, c, r, "incapacidad:", cbIncap);
+
+        JTextField tfPaisOrigen = txt(d_paisOrigen);
+        r = row(form, c, r, "codPaisOrigen:", tfPaisOrigen);
+
+        JSpinner spConsecUser = new JSpinner(new SpinnerNumberModel(d_consec.intValue(), 1, 9999, 1));
+        r = row(form, c, r, "consecutivo:", spConsecUser);
+
+        // -------- servicio --------
+        r = row(form, c, r, "codPrestador (XML/extraído):", ro(nvl(codPrestador, "")));
+        r = row(form, c, r, "numAutorizacion (XML):", ro(nvl(numAutorizacion, "")));
+
+        JTextField tfMIPRES = txt(null);
+        r = row(form, c, r, "idMIPRES (opcional):", tfMIPRES);
+
+        // fechaSuministro
+        JPanel pnlFechaSum = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        JDateChooser dcSumFecha = new JDateChooser();
+        dcSumFecha.setDateFormatString("yyyy-MM-dd");
+        JSpinner spHora = new JSpinner(new SpinnerNumberModel(15, 0, 23, 1));
+        JSpinner spMin  = new JSpinner(new SpinnerNumberModel(30, 0, 59, 1));
+        pnlFechaSum.add(dcSumFecha);
+        pnlFechaSum.add(new JLabel("Hora:"));
+        pnlFechaSum.add(spHora);
+        pnlFechaSum.add(new JLabel(":"));
+        pnlFechaSum.add(spMin);
+        r = row(form, c, r, "fechaSuministroTecnologia (fecha+hora):", pnlFechaSum);
+
+        JComboBox<String> cbTipoOS = new JComboBox<>(new String[]{"01","02","03","04","05"});
+        cbTipoOS.setSelectedItem(d_tipoOS);
+        r = row(form, c, r, "tipoOS:", cbTipoOS);
+
+        r = row(form, c, r, "codTecnologiaSalud (XML):", ro(nvl(def_codTec, "")));
+
+        JTextField tfNomTec = txt(nvl(def_nomTec, ""));
+        r = row(form, c, r, "nomTecnologiaSalud (editable):", tfNomTec);
+
+        JSpinner spCant = new JSpinner(new SpinnerNumberModel(1, 1, 9999, 1));
+        r = row(form, c, r, "cantidadOS:", spCant);
+
+        JComboBox<String> cbServTipoDoc = new JComboBox<>(new String[]{"CC","CE","TI","PA","RC","NIT","DNI","PS"});
+        cbServTipoDoc.setSelectedItem("CC");
+        r = row(form, c, r, "tipoDocumentoIdentificacion (servicio):", cbServTipoDoc);
+
+        JTextField tfServNumDoc = txt(nvl(def_numDocServicio, ""));
+        r = row(form, c, r, "numDocumentoIdentificacion (servicio):", tfServNumDoc);
+
+        JTextField roVrUnit = ro(String.valueOf(def_vr));
+        r = row(form, c, r, "vrUnitOS (auto):", roVrUnit);
+
+        JTextField roVrServ = ro(roVrUnit.getText());
+        r = row(form, c, r, "vrServicio (auto):", roVrServ);
+
+        JComboBox<String> cbConcepto = new JComboBox<>(new String[]{"01","02","03","04","05"});
+        cbConcepto.setSelectedItem(d_concepto);
+        r = row(form, c, r, "conceptoRecaudo:", cbConcepto);
+
+        JSpinner spValorPM = new JSpinner(new SpinnerNumberModel(d_valorPagoMod.intValue(), 0, Integer.MAX_VALUE, 1));
+        r = row(form, c, r, "valorPagoModerador:", spValorPM);
+
+        JTextField tfNumFEV = txt(null);
+        r = row(form, c, r, "numFEVPagoModerador (opcional):", tfNumFEV);
+
+        JSpinner spConsecServ = new JSpinner(new SpinnerNumberModel(d_consecServ.intValue(), 1, 9999, 1));
+        r = row(form, c, r, "consecutivoServicio:", spConsecServ);
+
+        JScrollPane leftScroll = new JScrollPane(form);
+        leftScroll.setPreferredSize(new Dimension(720, 520));
+        leftScroll.getVerticalScrollBar().setUnitIncrement(16);
+
+        // ------------------ PANEL DERECHO: MENSAJE ------------------
+        JTextArea taRight = new JTextArea();
+        taRight.setEditable(false);
+        taRight.setLineWrap(true);
+        taRight.setWrapStyleWord(true);
+        taRight.setBackground(new Color(250, 250, 250));
+        taRight.setBorder(BorderFactory.createTitledBorder("Mensaje / Vista previa"));
+
+        Runnable refreshRight = () -> {
+            StringBuilder sb = new StringBuilder();
+            if (noteHeader != null && !noteHeader.isBlank()) sb.append(noteHeader.trim());
+            else sb.append("(Sin nota)");
+            sb.append("\n\n");
+            sb.append("📅 Fecha de factura (IssueDate): ")
+                    .append(issueDate != null ? issueDate : "(no disponible)");
+
+            Date d = dcSumFecha.getDate();
+            Integer hh = (Integer) spHora.getValue();
+            Integer mm = (Integer) spMin.getValue();
+            if (d != null) {
+                Calendar cal = Calendar.getInstance();
+                cal.setTime(d);
+                cal.set(Calendar.HOUR_OF_DAY, hh);
+                cal.set(Calendar.MINUTE, mm);
+                cal.set(Calendar.SECOND, 0);
+
+                Calendar calStart = (Calendar) cal.clone();
+                calStart.add(Calendar.DATE, -1);
+                String startDate = new SimpleDateFormat("yyyy-MM-dd").format(calStart.getTime());
+                String endDate   = new SimpleDateFormat("yyyy-MM-dd").format(cal.getTime());
+
+                sb.append("\n🧾 Periodo de facturación (Paso F): ")
+                        .append(startDate).append(" a ").append(endDate)
+                        .append("\n   (StartTime 00:00:00-05:00, EndTime 00:00:00-05:00)");
+            } else {
+                sb.append("\n🧾 Periodo de facturación (Paso F): seleccione la fecha de suministro para previsualizar.");
+            }
+
+            taRight.setText(sb.toString());
+            taRight.setCaretPosition(0);
+        };
+        refreshRight.run();
+
+        PropertyChangeListener dateListener = new PropertyChangeListener() {
+            @Override public void propertyChange(PropertyChangeEvent evt) { refreshRight.run(); }
+        };
+        dcSumFecha.addPropertyChangeListener("date", dateListener);
+
+        ChangeListener timeListener = new ChangeListener() {
+            @Override public void stateChanged(ChangeEvent e) { refreshRight.run(); }
+        };
+        spHora.addChangeListener(timeListener);
+        spMin.addChangeListener(timeListener);
+
+        JScrollPane rightScroll = new JScrollPane(taRight,
+                ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        rightScroll.setPreferredSize(new Dimension(520, 520));
+        rightScroll.getVerticalScrollBar().setUnitIncrement(16);
+
+        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, leftScroll, rightScroll);
+        split.setResizeWeight(0.70); // 70% formulario / 30% mensaje
+        split.setBorder(null);
+
+        // ======= LOOP de confirmación/validación (NO se cierra al fallar) =======
+        while (true) {
+            int ok = JOptionPane.showConfirmDialog(null, split, "Datos para generar JSON",
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            if (ok != JOptionPane.OK_OPTION) return null;
+
+            try {
+                // --- recoger valores
+                Answers out = new Answers();
+
+                out.tipoNota = tfTipoNota.getText();
+                out.numNota  = tfNumNota.getText();
+
+                out.tipoDocumentoIdentificacion = String.valueOf(cbUserTipoDoc.getSelectedItem());
+                out.numDocumentoIdentificacion = tfUserNumDoc.getText();
+                out.tipoUsuario = tfTipoUsuario.getText();
+                out.fechaNacimiento = dateOrNull(dcNacimiento.getDate(), "yyyy-MM-dd");
+                out.codSexo = String.valueOf(cbSexo.getSelectedItem());
+                out.codPaisResidencia = tfCodPais.getText();
+                out.codMunicipioResidencia = tfMun.getText();
+                out.codZonaTerritorialResidencia = tfZona.getText();
+                out.incapacidad = String.valueOf(cbIncap.getSelectedItem());
+                out.codPaisOrigen = tfPaisOrigen.getText();
+                out.consecutivo = ((Number) spConsecUser.getValue()).intValue();
+
+                out.tipoOS = String.valueOf(cbTipoOS.getSelectedItem());
+                out.nomTecnologiaSalud = tfNomTec.getText();
+                out.cantidadOS = ((Number) spCant.getValue()).intValue();
+                out.tipoDocumentoIdentificacionServicio = String.valueOf(cbServTipoDoc.getSelectedItem());
+                out.numDocumentoIdentificacionServicio = tfServNumDoc.getText();
+                out.conceptoRecaudo = String.valueOf(cbConcepto.getSelectedItem());
+                out.valorPagoModerador = ((Number) spValorPM.getValue()).intValue();
+                out.numFEVPagoModerador = tfNumFEV.getText();
+                out.consecutivoServicio = ((Number) spConsecServ.getValue()).intValue();
+                out.idMIPRES = tfMIPRES.getText();
+
+                // fecha suministro (yyyy-MM-dd HH:mm)
+                Date d = dcSumFecha.getDate();
+                if (d != null) {
+                    Calendar cal = Calendar.getInstance();
+                    cal.setTime(d);
+                    cal.set(Calendar.HOUR_OF_DAY, (Integer) spHora.getValue());
+                    cal.set(Calendar.MINUTE, (Integer) spMin.getValue());
+                    cal.set(Calendar.SECOND, 0);
+                    out.fechaSuministroTecnologia = new SimpleDateFormat("yyyy-MM-dd HH:mm").format(cal.getTime());
+                }
+
+                // ===== Validaciones (las mismas que para los archivos de respuestas) =====
+                out.validate(issueDate);
+
+                return out; // ✅ todo ok, salimos del loop
+
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(null, ex.getMessage(), "Validación", JOptionPane.WARNING_MESSAGE);
+                // ↩️ vuelve a mostrar el mismo diálogo con los valores ya digitados
+            }
+        }
+    }
+
+    // ======================= Helpers UI =======================
+
+    private static int row(JPanel p, GridBagConstraints c, int r, String label, JComponent comp) {
+        c.gridx = 0; c.gridy = r; c.weightx = 0; c.fill = GridBagConstraints.NONE;
+        JLabel lb = new JLabel(label);
+        p.add(lb, c);
+        c.gridx = 1; c.weightx = 1; c.fill = GridBagConstraints.HORIZONTAL;
+        p.add(comp, c);
+        return r + 1;
+    }
+
+    private static JTextField txt(String s) {
+        JTextField t = new JTextField();
+        if (s != null) t.setText(s);
+        return t;
+    }
+
+    private static JTextField ro(String s) {
+        JTextField t = new JTextField();
+        if (s != null) t.setText(s);
+        t.setEditable(false);
+        t.setBackground(new Color(245, 245, 245));
+        return t;
+    }
+
+    private static String dateOrNull(Date d, String pattern) {
+        if (d == null) return null;
+        return new SimpleDateFormat(pattern).format(d);
+    }
+
+    private static String nvl(String s, String def) {
+        return (s == null || s.isBlank()) ? def : s;
+    }
+}
@@ -0,0 +1,141 @@
+package xml.json.transformer.application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Modo {@code --train [N]}: procesa N veces (1 por defecto) el AttachedDocument sintético incluido en el JAR
+ * ({@code /train/attached-document.xml}, dos Invoice embebidos, respuestas en {@code /train/answers.json}) con
+ * el flujo completo, en todas las combinaciones de motor (DOM/STAX/XSLT) y modo (DOM/streaming), y sale. Todo se
+ * hace en un directorio temporal que se borra al final.
+ * <p>
+ * Sirve para generar un archivo AppCDS con las clases que usa una transformación real (perfil {@code cds} del
+ * {@code pom.xml}):
+ * <pre>
+ *   java -XX:ArchiveClassesAtExit=xml_transformer.jsa -jar xml_transformer-shaded.jar --train
+ *   java -XX:SharedArchiveFile=xml_transformer.jsa -jar xml_transformer-shaded.jar
+ * </pre>
+ * Al terminar imprime cuánto tardó el primer resultado desde el arranque del proceso, para comparar el
+ * arranque en frío con y sin el archivo.
+ * <p>
+ * {@link Warmup#pipeline()} corre una pasada igual en segundo plano dentro de la aplicación.
+ */
+public final class TrainingRun {
+
+    static final String DOCUMENT = "/train/attached-document.xml";
+    static final String ANSWERS = "/train/answers.json";
+
+    /** Clases de la interfaz que el primer clic carga (cuestionario, selector de archivo, progreso). */
+    private static final String[] UI_CLASSES = {
+            "com.toedter.calendar.JDateChooser",
+            "javax.swing.JOptionPane",
+            "javax.swing.JFileChooser",
+            "javax.swing.JSplitPane",
+            "javax.swing.JSpinner",
+            "javax.swing.JProgressBar",
+            "javax.swing.SwingWorker",
+            "xml.json.transformer.application.SwingAnswerProvider",
+    };
+
+    private TrainingRun() {}
+
+    /** Punto de entrada desde {@code Main}. Devuelve el código de salida del proceso. */
+    public static int run(String[] args) {
+        int iterations = 1;
+        try {
+            if (args.length > 1) iterations = Integer.parseInt(args[1]);
+            if (iterations < 1) throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            System.err.println("❌ Uso: --train [iteraciones >= 1]");
+            return 2;
+        }
+
+        try {
+            long t0 = System.nanoTime();
+            long firstResultMillis = train(iterations);
+            long processStart = ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli).orElse(-1L);
+            System.out.println();
+            System.out.println("================ Entrenamiento ================");
+            System.out.println("Iteraciones          : " + iterations
+                    + " (x" + TransformEngine.values().length * 2 + " combinaciones motor/modo)");
+            System.out.printf(Locale.ROOT, "Tiempo total         : %.3f s%n", (System.nanoTime() - t0) / 1_000_000_000.0);
+            if (processStart > 0) {
+                System.out.println("Primer resultado     : " + (firstResultMillis - processStart) + " ms desde el arranque");
+            }
+            System.out.println(StageMetrics.summary());
+            System.out.println("===============================================");
+            return 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    /**
+     * Corre el entrenamiento.
+     *
+     * @return hora (epoch ms) en que quedó escrito el primer resultado.
+     */
+    static long train(int iterations) throws Exception {
+        for (String name : UI_CLASSES) {
+            try {
+                Class.forName(name, false, TrainingRun.class.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError ignore) {
+                // sólo se cargan para el archivo CDS; si falta alguna no afecta la transformación
+            }
+        }
+
+        Path dir = Files.createTempDirectory("xmlt-train");
+        try {
+            Path input = copyResource(DOCUMENT, dir.resolve("attached-document.xml"));
+            AnswerProvider answers = FileAnswerProvider.bulk(copyResource(ANSWERS, dir.resolve("answers.json")));
+            Path outRoot = dir.resolve("out");
+            long firstResult = 0;
+            for (int i = 0; i < iterations; i++) {
+                for (TransformEngine engine : TransformEngine.values()) {
+                    for (boolean streaming : new boolean[]{false, true}) {
+                        InvoiceProcessor processor = new InvoiceProcessor(
+                                new XmlAdapterService(engine, false, true, RuleSet.defaults()), streaming, answers);
+                        if (processor.process(input.toFile(), outRoot) == null) {
+                            throw new IllegalStateException("❌ El entrenamiento no produjo resultado.");
+                        }
+                        if (firstResult == 0) firstResult = System.currentTimeMillis();
+                    }
+                }
+            }
+            return firstResult;
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static Path copyResource(String resource, Path target) throws IOException {
+        try (InputStream in = TrainingRun.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IOException("Recurso no encontrado en el JAR: " + resource);
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("⚠️ No se pudo borrar " + dir + ": " + e.getMessage());
+        }
+    }
+}
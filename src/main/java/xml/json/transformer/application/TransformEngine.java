@@ -0,0 +1,43 @@
+package xml.json.transformer.application;
+
+import java.util.Locale;
+
+/** Motor usado para reescribir el Invoice embebido (reglas A–H + paso F). */
+public enum TransformEngine {
+    /** Parseo DOM + las reglas de {@link RuleSet} en un recorrido (implementación original). */
+    DOM,
+    /**
+     * Una sola pasada XMLStreamReader → texto, sin construir DOM ({@link StaxInvoiceRewriter}); misma salida que DOM
+     * byte a byte salvo en hojas Value/Name/CustomizationID con hijos elemento, que se copian sin aplicar la regla.
+     */
+    STAX,
+    /**
+     * Hoja XSLT precompilada ({@link XsltInvoiceRewriter}); misma salida que DOM con la hoja incluida. El procesador
+     * no conserva CDATA: con la hoja incluida esos Invoice pasan por DOM; con una hoja propia salen como texto escapado.
+     */
+    XSLT;
+
+    /**
+     * Versión de las reglas A–H + paso F. Subirla cuando cambie la salida de las transformaciones: invalida lo
+     * registrado en {@link ProcessingManifest} y obliga a reprocesar.
+     */
+    public static final int RULES_VERSION = 2;
+
+    /** Identifica motor + versión de reglas, p. ej. {@code DOM/2}. */
+    public String version() {
+        return name() + "/" + RULES_VERSION;
+    }
+
+    /** Lee {@code -Dxmlt.engine=dom|stax|xslt}; DOM si no se indica. */
+    public static TransformEngine fromSystemProperty() {
+        return parse(System.getProperty("xmlt.engine", "dom"));
+    }
+
+    public static TransformEngine parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Motor desconocido: " + name + " (use dom|stax|xslt)");
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package xml.json.transformer.application;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+import xml.json.transformer.licensing.ActivationGate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servicio HTTP local: {@code --serve <port> [--bind host] [--max-inflight N] [--max-body-mb M] [--engine dom|stax|xslt]}.
+ * <ul>
+ *   <li>{@code POST /transform} — cuerpo JSON {@code {"xml": "<AttachedDocument…>", "answers": {…}}} (las claves de
+ *       {@link Answers}); responde {@code {"factura", "xml", "rips"}} con el XML transformado y el JSON RIPS.</li>
+ *   <li>{@code POST /extract} — cuerpo XML (o JSON {@code {"xml": …}}); responde los campos que precarga el
+ *       cuestionario ({@link PrefillFields}) más {@code issueDate}.</li>
+ *   <li>{@code GET /health} — {@code {"status":"ok","inFlight":n}}.</li>
+ * </ul>
+ * Cada conexión se atiende en su propia tarea ({@link Workers#perTaskExecutor}), que sólo valida método, cupo y
+ * tamaño y lee el cuerpo. Hay a lo sumo {@code max-inflight} peticiones procesándose; las demás reciben 503 con
+ * {@code Retry-After} en vez de encolarse. Cuerpos mayores a {@code max-body-mb} reciben 413.
+ * <p>
+ * El trabajo XML corre en un pool fijo de {@code max-inflight} hilos de plataforma. Los parsers, transformers y
+ * XPath compilados de {@link XmlPools} y {@link XPathRegistry} son por hilo: con un hilo virtual por petición
+ * (Java 21+) cada una empezaría con todo frío. Con el pool fijo se crean una vez por hilo y se reutilizan entre
+ * peticiones; el cupo garantiza que nunca hay trabajo esperando en su cola.
+ */
+public final class TransformServer {
+
+    private static final String USAGE =
+            "Uso: --serve <port> [--bind host] [--max-inflight N] [--max-body-mb M] [--engine dom|stax|xslt]";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    /** Opciones de línea de comandos del modo servidor. */
+    static final class Options {
+        String bind = "127.0.0.1";
+        int port;
+        int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+        int maxBodyBytes = 20 * 1024 * 1024;
+        /** El cuerpo se lee en un arreglo de bytes: 2047 MB es lo más que cabe en un int. */
+        static final int MAX_BODY_MB = Integer.MAX_VALUE / (1024 * 1024);
+        TransformEngine engine = TransformEngine.fromSystemProperty();
+
+        static Options parse(String[] args) {
+            if (args.length < 2) throw new IllegalArgumentException("Falta el puerto.");
+            Options o = new Options();
+            o.port = Integer.parseInt(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                if ("--bind".equals(args[i]) && i + 1 < args.length) {
+                    o.bind = args[++i];
+                } else if ("--max-inflight".equals(args[i]) && i + 1 < args.length) {
+                    o.maxInFlight = Integer.parseInt(args[++i]);
+                } else if ("--max-body-mb".equals(args[i]) && i + 1 < args.length) {
+                    int mb = Integer.parseInt(args[++i]);
+                    if (mb < 1 || mb > MAX_BODY_MB) {
+                        throw new IllegalArgumentException("--max-body-mb debe estar entre 1 y " + MAX_BODY_MB);
+                    }
+                    o.maxBodyBytes = mb * 1024 * 1024;
+                } else if ("--engine".equals(args[i]) && i + 1 < args.length) {
+                    o.engine = TransformEngine.parse(args[++i]);
+                } else {
+                    throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+                }
+            }
+            if (o.port < 0 || o.port > 65535) throw new IllegalArgumentException("Puerto inválido: " + o.port);
+            if (o.maxInFlight < 1) throw new IllegalArgumentException("--max-inflight debe ser >= 1");
+            return o;
+        }
+    }
+
+    /** Cuerpo mayor al permitido. */
+    private static final class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TooLargeException(int max) {
+            super("El cuerpo supera el máximo de " + max + " bytes.");
+        }
+    }
+
+    /** Cabeceras de la petición mal formadas. */
+    private static final class BadRequestException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange, byte[] body) throws Exception;
+    }
+
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ExecutorService workers;
+    private final Semaphore permits;
+    private final XmlAdapterService xmlService;
+
+    TransformServer(Options options) throws IOException {
+        this.options = options;
+        this.permits = new Semaphore(options.maxInFlight);
+        this.xmlService = new XmlAdapterService(options.engine, false, false);
+        this.executor = Workers.perTaskExecutor("xmlt-http");
+        this.workers = Executors.newFixedThreadPool(options.maxInFlight, Workers.daemonThreads("xmlt-http-worker"));
+        this.server = HttpServer.create(new InetSocketAddress(options.bind, options.port), 0);
+        server.setExecutor(executor);
+        server.createContext("/transform", guarded("POST", this::transform));
+        server.createContext("/extract", guarded("POST", this::extract));
+        server.createContext("/health", guarded("GET", this::health));
+    }
+
+    /** Punto de entrada desde {@code Main}. Bloquea mientras el servidor esté activo. */
+    public static int run(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        if (!ActivationGate.isActivatedHeadless()) {
+            System.err.println("❌ La aplicación requiere una licencia válida para continuar.");
+            return 3;
+        }
+
+        try {
+            TransformServer s = new TransformServer(options);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> s.stop(2)));
+            s.start();
+            Thread.currentThread().join();
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    void start() {
+        server.start();
+        System.out.println("🌐 Servidor en http://" + options.bind + ":" + port() + " (máx. " + options.maxInFlight
+                + " en vuelo, cuerpo ≤ " + options.maxBodyBytes / (1024 * 1024) + " MB, motor " + options.engine + ", "
+                + (Workers.virtualThreadsAvailable() ? "hilos virtuales" : "pool de hilos") + ")");
+    }
+
+    void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        workers.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+            workers.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Puerto efectivo (útil con {@code --serve 0}). */
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    // ------------------------------------------------------------------
+    // Endpoints
+    // ------------------------------------------------------------------
+    private void transform(HttpExchange exchange, byte[] body) throws Exception {
+        JsonNode request = MAPPER.readTree(body);
+        String xml = request.path("xml").asText(null);
+        if (xml == null || xml.isBlank()) throw new IllegalArgumentException("Falta 'xml'.");
+        JsonNode answersNode = request.get("answers");
+        if (answersNode == null || !answersNode.isObject()) throw new IllegalArgumentException("Falta 'answers'.");
+        Answers answers = MAPPER.treeToValue(answersNode, Answers.class);
+
+        InvoiceProcessor.Transformed t;
+        ByteArrayOutputStream xmlOut = new ByteArrayOutputStream(xml.length() + 1024);
+        try {
+            ParsedInvoice invoice = ParsedInvoice.of(xmlService, parse(xml.getBytes(StandardCharsets.UTF_8)));
+            InvoiceProcessor processor = new InvoiceProcessor(xmlService, false, (fields, issueDate) -> answers);
+            t = processor.transform(invoice, null);
+            xmlService.writeXml(t.xml, xmlOut);
+        } finally {
+            StageEvent.clearFactura(); // los hilos del servidor se reutilizan
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("factura", t.factura);
+        response.put("xml", xmlOut.toString(StandardCharsets.UTF_8));
+        response.put("rips", t.data);
+        sendJson(exchange, 200, response);
+    }
+
+    private void extract(HttpExchange exchange, byte[] body) throws Exception {
+        byte[] xml = body;
+        if (firstNonWhitespace(body) == '{') {
+            String text = MAPPER.readTree(body).path("xml").asText(null);
+            if (text == null || text.isBlank()) throw new IllegalArgumentException("Falta 'xml'.");
+            xml = text.getBytes(StandardCharsets.UTF_8);
+        }
+        ParsedInvoice invoice = ParsedInvoice.of(xmlService, parse(xml));
+        PrefillFields fields = new JsonBuilderService(null).extractFields(invoice);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("issueDate", invoice.issueDate());
+        response.put("fields", fields);
+        sendJson(exchange, 200, response);
+    }
+
+    private void health(HttpExchange exchange, byte[] body) throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "ok");
+        response.put("inFlight", options.maxInFlight - permits.availablePermits());
+        sendJson(exchange, 200, response);
+    }
+
+    // ------------------------------------------------------------------
+    // Infraestructura
+    // ------------------------------------------------------------------
+    /** Método, cupo, límite de tamaño y traducción de errores comunes a todos los endpoints. */
+    private com.sun.net.httpserver.HttpHandler guarded(String method, Handler handler) {
+        return exchange -> {
+            try (exchange) {
+                if (!method.equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    sendError(exchange, 405, "Método no permitido.");
+                    return;
+                }
+                if (!permits.tryAcquire()) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    sendError(exchange, 503, "Servidor ocupado, reintente.");
+                    return;
+                }
+                try {
+                    byte[] body = readBody(exchange);
+                    onWorker(() -> {
+                        handler.handle(exchange, body);
+                        return null;
+                    });
+                } catch (TooLargeException e) {
+                    sendError(exchange, 413, e.getMessage());
+                } catch (BadRequestException e) {
+                    sendError(exchange, 400, e.getMessage());
+                } catch (JsonProcessingException | SAXException e) {
+                    sendError(exchange, 400, "Cuerpo inválido: " + e.getMessage());
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    sendError(exchange, 422, e.getMessage());
+                } catch (Exception e) {
+                    System.err.println("❌ " + exchange.getRequestURI() + ": " + e);
+                    sendError(exchange, 500, String.valueOf(e));
+                } finally {
+                    permits.release();
+                }
+            }
+        };
+    }
+
+    /** Corre {@code task} en {@link #workers} y espera; relanza tal cual la excepción de la tarea. */
+    private void onWorker(Callable<Void> task) throws Exception {
+        try {
+            workers.submit(task).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        int max = options.maxBodyBytes;
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (declared != null) {
+            long length;
+            try {
+                length = Long.parseLong(declared.trim());
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Content-Length inválido: " + declared);
+            }
+            if (length > max) throw new TooLargeException(max);
+        }
+
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(max + 1);
+            if (body.length > max) throw new TooLargeException(max);
+            return body;
+        }
+    }
+
+    private Document parse(byte[] xml) throws Exception {
+        return xmlService.readXml(new ByteArrayInputStream(xml));
+    }
+
+    private static int firstNonWhitespace(byte[] body) {
+        for (byte b : body) {
+            if (!Character.isWhitespace(b)) return b;
+        }
+        return -1;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("error", message);
+        sendJson(exchange, status, response);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Object response) throws IOException {
+        byte[] bytes = JsonWriters.writer(false).writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
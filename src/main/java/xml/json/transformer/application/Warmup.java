@@ -0,0 +1,81 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Document;
+import xml.json.transformer.domain.InvoiceData;
+import xml.json.transformer.domain.UserData;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * Precalentamiento en segundo plano al abrir la interfaz, para que el costo de arranque no caiga en el primer clic
+ * de "Iniciar". Según {@code -Dxmlt.warmup}:
+ * <ul>
+ *   <li>{@code classes} (por defecto): {@link #classes()}, carga de clases y factorías.</li>
+ *   <li>{@code pipeline}: {@link #pipeline()}, además corre el flujo completo sobre el documento de
+ *       {@link TrainingRun}, así el JIT ya compiló los métodos calientes.</li>
+ *   <li>{@code off}: nada.</li>
+ * </ul>
+ * Los objetos por hilo que se crean (DocumentBuilder, XPath, ...) quedan en el hilo que lo ejecuta; lo que se
+ * gana es global: clases cargadas e inicializadas, factorías y código compilado.
+ */
+public final class Warmup {
+
+    private static final String SAMPLE = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Invoice xmlns="urn:oasis:names:specification:ubl:schema:xsd:Invoice-2"
+                     xmlns:cac="urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2"
+                     xmlns:cbc="urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2">
+              <cbc:IssueDate>2024-01-01</cbc:IssueDate>
+              <cbc:Description>calentamiento</cbc:Description>
+              <cac:AdditionalInformation>
+                <cbc:Name>CODIGO PRESTADOR</cbc:Name>
+                <cbc:Value>000000000000</cbc:Value>
+              </cac:AdditionalInformation>
+            </Invoice>
+            """;
+
+    private Warmup() {}
+
+    /** Lo que pida {@code -Dxmlt.warmup}. No lanza excepciones. */
+    public static void run() {
+        String mode = System.getProperty("xmlt.warmup", "classes").trim().toLowerCase(Locale.ROOT);
+        switch (mode) {
+            case "off", "false", "none" -> { }
+            case "pipeline" -> pipeline();
+            default -> classes();
+        }
+    }
+
+    /** Flujo completo sobre el documento sintético; las métricas de etapa se vacían al terminar. */
+    public static void pipeline() {
+        System.out.println("🔥 Precalentando el flujo con el documento de entrenamiento...");
+        try {
+            TrainingRun.train(1);
+            StageMetrics.reset();
+            System.out.println("🔥 Precalentamiento listo.");
+        } catch (Exception | LinkageError e) {
+            System.err.println("⚠️ Precalentamiento incompleto: " + e);
+        }
+    }
+
+    /** No lanza excepciones: si algo falla, el primer archivo simplemente paga la carga como antes. */
+    public static void classes() {
+        try {
+            Document doc = XmlPools.documentBuilder()
+                    .parse(new ByteArrayInputStream(SAMPLE.getBytes(StandardCharsets.UTF_8)));
+            PrefillScanner.scan(doc, PrefillScanner.EMBEDDED);
+            XPathRegistry.nodes(doc, ParsedInvoice.DESCRIPTION_TEXTS);
+            InnerXmlWriter.write(doc);
+            XmlPools.indentingTransformer();
+            XmlPools.staxInputFactory();
+            JsonWriters.writeInvoice(new InvoiceData(), Collections.<UserData>emptyIterator(),
+                    OutputStream.nullOutputStream(), true);
+        } catch (Exception | LinkageError e) {
+            System.err.println("⚠️ Precarga de clases incompleta: " + e);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package xml.json.transformer.application;
+
+import xml.json.transformer.licensing.ActivationGate;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Modo vigilancia: {@code --watch <inDir> <outDir> --answers <dir|archivo> [--max-inflight N] [--settle-ms M]
+ * [--initial-scan] [opciones batch]}.
+ * <p>
+ * Escucha {@code inDir} con {@link WatchService} y procesa cada {@code .xml} nuevo o modificado cuando ya
+ * terminó de escribirse. Los eventos repetidos de un mismo archivo se agrupan (debounce) y un archivo sólo se
+ * considera listo cuando pasaron {@code settle-ms} sin eventos, su tamaño y fecha no cambiaron entre dos
+ * revisiones y se puede abrir para lectura. Cada archivo corre en su propia tarea ({@link Workers#perTaskExecutor})
+ * con a lo sumo {@code max-inflight} en vuelo; lo que no cabe queda pendiente y se reintenta en la siguiente revisión.
+ * La salida es la misma del batch: {@code outDir/<factura>/<factura>.xml|.json}, y comparte su
+ * {@link ProcessingManifest}: al reiniciar con {@code --initial-scan} sólo se procesa lo nuevo o cambiado.
+ * Mientras corre, las métricas por etapa se pueden seguir por JMX ({@link StageMetrics}).
+ * <p>
+ * {@code --answers} (o {@code -Dxmlt.answers}) es obligatorio: sin él el cuestionario sería el de Swing y los
+ * hilos de trabajo quedarían esperando diálogos que nadie contesta.
+ */
+public final class WatchDaemon {
+
+    private static final String USAGE =
+            "Uso: --watch <inDir> <outDir> --answers <dir|archivo> [--max-inflight N] [--settle-ms M] [--initial-scan] [opciones de --batch]";
+
+    /** Tamaño y fecha de un archivo en una revisión: si se repiten, el archivo ya no está cambiando. */
+    private static final class Snapshot {
+        final long size;
+        final long modified;
+        final long lastEventNanos;
+
+        Snapshot(long size, long modified, long lastEventNanos) {
+            this.size = size;
+            this.modified = modified;
+            this.lastEventNanos = lastEventNanos;
+        }
+
+        boolean sameFile(Snapshot o) {
+            return o != null && size == o.size && modified == o.modified;
+        }
+    }
+
+    private final BatchRunner.Options options;
+    private final XmlAdapterService xmlService;
+    private final AnswerProvider answers;
+    private final Semaphore inFlight;
+    private final long settleNanos;
+
+    /** Archivos con eventos recientes, aún no procesados. */
+    private final Map<Path, Snapshot> pending = new ConcurrentHashMap<>();
+    /**
+     * Versión (tamaño+fecha) en proceso de cada archivo: evita lanzarlo dos veces por eventos duplicados. Se quita
+     * al terminar; un evento tardío de la misma versión lo descarta el {@link ProcessingManifest} por su hash.
+     */
+    private final Map<Path, Snapshot> handled = new ConcurrentHashMap<>();
+
+    private ProcessingManifest manifest;
+    private ExecutorService workers;
+    private ScheduledExecutorService ticker;
+    private boolean stopped;
+
+    private final AtomicInteger ok = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    WatchDaemon(BatchRunner.Options options) throws IOException {
+        this.options = options;
+        this.xmlService = options.newXmlService();
+        this.answers = options.newAnswerProvider();
+        this.inFlight = new Semaphore(options.maxInFlight);
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(options.settleMillis);
+    }
+
+    /** Punto de entrada desde {@code Main}. Sólo retorna si no puede arrancar o si se interrumpe. */
+    public static int run(String[] args) {
+        BatchRunner.Options options;
+        try {
+            options = BatchRunner.Options.parse(args);
+            if (options.answers == null) {
+                throw new IllegalArgumentException("--watch requiere --answers (o -Dxmlt.answers): no hay quien conteste el cuestionario.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        if (!ActivationGate.isActivatedHeadless()) {
+            System.err.println("❌ La aplicación requiere una licencia válida para continuar.");
+            return 3;
+        }
+
+        try {
+            new WatchDaemon(options).watch();
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    void watch() throws IOException, InterruptedException {
+        Path inDir = options.inDir;
+        Files.createDirectories(options.outDir);
+        manifest = ProcessingManifest.open(options.outDir);
+
+        workers = Workers.perTaskExecutor("xmlt-watch");
+        ticker = Executors.newSingleThreadScheduledExecutor(Workers.daemonThreads("xmlt-watch-tick"));
+        try (WatchService watcher = inDir.getFileSystem().newWatchService()) {
+            inDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            System.out.println("👀 Vigilando " + inDir + " → " + options.outDir + " (máx. " + options.maxInFlight
+                    + " en vuelo, espera " + options.settleMillis + " ms, "
+                    + (Workers.virtualThreadsAvailable() ? "hilos virtuales" : "pool de hilos") + ")");
+
+            if (options.initialScan) scanDirectory();
+
+            long period = Math.max(50, options.settleMillis / 2);
+            ticker.scheduleWithFixedDelay(() -> {
+                try {
+                    dispatchReady();
+                } catch (RuntimeException e) {
+                    System.err.println("❌ Vigilancia: " + e);
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+
+            // Con SIGTERM el finally de abajo no corre: el hook espera a los archivos en vuelo y cierra el manifiesto
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    stop();
+                } catch (InterruptedException | IOException e) {
+                    System.err.println("❌ Al detener la vigilancia: " + e);
+                }
+                System.out.println("🛑 Vigilancia detenida: " + ok.get() + " OK, " + skipped.get() + " sin cambios, "
+                        + failed.get() + " fallos.\n" + StageMetrics.summary());
+            }));
+
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Se perdieron eventos: revisar el directorio completo
+                        scanDirectory();
+                        continue;
+                    }
+                    Path file = inDir.resolve((Path) event.context());
+                    if (isXml(file)) touch(file);
+                }
+                if (!key.reset()) {
+                    System.err.println("❌ El directorio vigilado ya no está disponible: " + inDir);
+                    return;
+                }
+            }
+        } finally {
+            stop();
+        }
+    }
+
+    /** Deja de lanzar archivos, espera a los que están en vuelo y cierra el manifiesto. Sólo actúa la primera vez. */
+    private synchronized void stop() throws InterruptedException, IOException {
+        if (stopped) return;
+        stopped = true;
+        ticker.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.err.println("⚠️ Quedaron archivos en proceso al detener la vigilancia.");
+            }
+        } finally {
+            manifest.close();
+        }
+    }
+
+    /** Registra (o refresca) un evento: reinicia la espera del archivo. */
+    private void touch(Path file) {
+        pending.put(file, new Snapshot(-1, -1, System.nanoTime()));
+    }
+
+    private void scanDirectory() throws IOException {
+        try (Stream<Path> s = Files.list(options.inDir)) {
+            s.filter(this::isXml).filter(Files::isRegularFile).forEach(this::touch);
+        }
+    }
+
+    /** Revisa los pendientes y lanza los que ya están estables, mientras haya cupo. */
+    private void dispatchReady() {
+        long now = System.nanoTime();
+        for (Map.Entry<Path, Snapshot> e : pending.entrySet()) {
+            Path file = e.getKey();
+            Snapshot previous = e.getValue();
+            if (now - previous.lastEventNanos < settleNanos) continue;
+
+            Snapshot current = snapshot(file, previous.lastEventNanos);
+            if (current == null) {                   // borrado o movido antes de procesarlo
+                pending.remove(file, previous);
+                continue;
+            }
+            if (!current.sameFile(previous) || !readable(file)) {
+                pending.replace(file, previous, current); // sigue cambiando: esperar otra revisión
+                continue;
+            }
+            if (current.sameFile(handled.get(file))) { // evento duplicado de una versión ya procesada
+                pending.remove(file, previous);
+                continue;
+            }
+            if (!inFlight.tryAcquire()) return;      // sin cupo: queda pendiente
+            if (!pending.remove(file, previous)) {   // llegó otro evento mientras tanto
+                inFlight.release();
+                continue;
+            }
+            handled.put(file, current);
+            workers.execute(() -> {
+                try {
+                    process(file);
+                } finally {
+                    handled.remove(file, current);
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    private void process(Path file) {
+        try {
+            InvoiceProcessor processor = new InvoiceProcessor(xmlService, options.streaming, answers);
+            InvoiceProcessor.Result r = processor.process(file.toFile(), options.outDir, manifest, options.force);
+            if (r != null && r.skipped) {
+                skipped.incrementAndGet();
+            } else if (r != null) {
+                ok.incrementAndGet();
+                System.out.println("✅ " + file.getFileName() + " → " + r.outDir);
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("❌ " + file + ": " + e);
+        }
+    }
+
+    private static Snapshot snapshot(Path file, long lastEventNanos) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!a.isRegularFile()) return null;
+            return new Snapshot(a.size(), a.lastModifiedTime().toMillis(), lastEventNanos);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** En Windows el productor mantiene el archivo bloqueado mientras escribe: si no abre, no está listo. */
+    private static boolean readable(Path file) {
+        try {
+            Files.newInputStream(file).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean isXml(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".xml");
+    }
+}
@@ -0,0 +1,74 @@
+package xml.json.transformer.application;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Ejecutores compartidos por los modos sin interfaz. */
+public final class Workers {
+
+    /**
+     * Invoice embebidos de un mismo AttachedDocument: desde cuántos se reescriben en paralelo
+     * ({@code -Dxmlt.parallel.threshold}, 4 por defecto) y con cuántos hilos ({@code -Dxmlt.parallel.threads},
+     * los núcleos por defecto; 1 lo desactiva).
+     */
+    static final int PAYLOAD_PARALLEL_THRESHOLD = Math.max(1, Integer.getInteger("xmlt.parallel.threshold", 4));
+    static final int PAYLOAD_THREADS = Math.max(1,
+            Integer.getInteger("xmlt.parallel.threads", Runtime.getRuntime().availableProcessors()));
+
+    private Workers() {}
+
+    /**
+     * Pool ForkJoin compartido para la reescritura de Invoice embebidos (trabajo de CPU). Es único para todo el
+     * proceso: en batch varios archivos lo comparten y el total de hilos de payload no pasa de
+     * {@link #PAYLOAD_THREADS}.
+     */
+    static ForkJoinPool payloadPool() {
+        return PayloadPool.POOL;
+    }
+
+    private static final class PayloadPool {
+        static final ForkJoinPool POOL = new ForkJoinPool(PAYLOAD_THREADS, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("xmlt-payload-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+
+    /**
+     * Un hilo por tarea: hilos virtuales si la JVM los tiene (Java 21+), si no un pool cacheado de hilos
+     * daemon. En ambos casos el llamador debe acotar cuántas tareas hay en vuelo.
+     */
+    public static ExecutorService perTaskExecutor(String name) {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonThreads(name));
+        }
+    }
+
+    /** true si {@link #perTaskExecutor} usa hilos virtuales en esta JVM. */
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    static ThreadFactory daemonThreads(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
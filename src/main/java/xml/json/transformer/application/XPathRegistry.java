@@ -0,0 +1,105 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro central de expresiones XPath precompiladas con el contexto de namespaces UBL/DIAN.
+ * <p>
+ * Ni {@link XPath} ni {@link XPathExpression} son thread-safe en la implementación del JDK,
+ * así que cada hilo guarda su propio {@code XPath} y su caché de expresiones; una expresión se
+ * compila una sola vez por hilo. Los contadores permiten comprobar que, tras el calentamiento,
+ * no se compila nada en la ruta caliente ({@link #compiles()} deja de crecer).
+ */
+public final class XPathRegistry {
+
+    // ===== Namespaces =====
+    public static final Map<String, String> NS = Map.of(
+            "cbc", "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2",
+            "cac", "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2",
+            "sts", "dian:gov:co:facturaelectronica:Structures-2-1",
+            "xades", "http://uri.etsi.org/01903/v1.3.2#"
+    );
+
+    private static final NamespaceContext NS_CONTEXT = new NamespaceContext() {
+        @Override
+        public String getNamespaceURI(String prefix) {
+            return NS.getOrDefault(prefix, XMLConstants.NULL_NS_URI);
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            for (Map.Entry<String, String> e : NS.entrySet()) {
+                if (Objects.equals(e.getValue(), namespaceURI)) return e.getKey();
+            }
+            return null;
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            List<String> prefixes = new ArrayList<>();
+            for (Map.Entry<String, String> e : NS.entrySet()) {
+                if (Objects.equals(e.getValue(), namespaceURI)) prefixes.add(e.getKey());
+            }
+            return prefixes.iterator(); // nunca null
+        }
+    };
+
+    private static final ThreadLocal<XPath> XPATH = ThreadLocal.withInitial(() -> {
+        XPath xp = XPathFactory.newInstance().newXPath();
+        xp.setNamespaceContext(NS_CONTEXT);
+        return xp;
+    });
+    private static final ThreadLocal<Map<String, XPathExpression>> CACHE = ThreadLocal.withInitial(HashMap::new);
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder COMPILES = new LongAdder();
+
+    private XPathRegistry() {}
+
+    /** Devuelve la expresión compilada para el hilo actual (la compila en el primer uso). */
+    public static XPathExpression get(String expr) throws XPathExpressionException {
+        Map<String, XPathExpression> cache = CACHE.get();
+        XPathExpression compiled = cache.get(expr);
+        if (compiled != null) {
+            HITS.increment();
+            return compiled;
+        }
+        compiled = XPATH.get().compile(expr);
+        cache.put(expr, compiled);
+        COMPILES.increment();
+        return compiled;
+    }
+
+    /** Equivale a {@code string(expr)} sobre {@code ctx}. */
+    public static String string(Object ctx, String expr) throws XPathExpressionException {
+        return (String) evaluate(ctx, expr, XPathConstants.STRING);
+    }
+
+    public static NodeList nodes(Object ctx, String expr) throws XPathExpressionException {
+        return (NodeList) evaluate(ctx, expr, XPathConstants.NODESET);
+    }
+
+    public static Node node(Object ctx, String expr) throws XPathExpressionException {
+        return (Node) evaluate(ctx, expr, XPathConstants.NODE);
+    }
+
+    private static Object evaluate(Object ctx, String expr, QName type) throws XPathExpressionException {
+        return get(expr).evaluate(ctx, type);
+    }
+
+    public static long hits() { return HITS.sum(); }
+
+    public static long compiles() { return COMPILES.sum(); }
+
+    public static String stats() {
+        return "XPath: " + compiles() + " compiladas, " + hits() + " reutilizadas";
+    }
+}
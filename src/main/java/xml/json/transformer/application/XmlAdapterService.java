@@ -3,83 +3,144 @@ package xml.json.transformer.application;
 import org.w3c.dom.*;
 import xml.json.transformer.infrastructure.XmlAdapter;
 
-import javax.xml.XMLConstants;
-import javax.xml.namespace.NamespaceContext;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.*;
+import javax.xml.transform.stream.StreamSource;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
 
 public class XmlAdapterService implements XmlAdapter {
 
-    private static final Map<String, String> NS = Map.of(
-            "cbc", "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2",
-            "cac", "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2",
-            "sts", "dian:gov:co:facturaelectronica:Structures-2-1"
-    );
+    static final Map<String, String> NS = XPathRegistry.NS;
+
+    private final TransformEngine engine;
+    private final boolean spliceOutput;
+    private final boolean prettyJson;
+    private final RuleSet rules;
+    private final StaxInvoiceRewriter staxRewriter = new StaxInvoiceRewriter();
+    private final XsltInvoiceRewriter xsltRewriter;
+
+    /** Usa el motor indicado por {@code -Dxmlt.engine} (DOM por defecto) y {@code -Dxmlt.splice}. */
+    public XmlAdapterService() {
+        this(TransformEngine.fromSystemProperty());
+    }
+
+    public XmlAdapterService(TransformEngine engine) {
+        this(engine, Boolean.getBoolean("xmlt.splice"));
+    }
+
+    /**
+     * @param spliceOutput si es true, {@link #writeXml(ParsedInvoice, Document, String)} copia los bytes del
+     *                     original y sólo empalma el contenido embebido modificado.
+     */
+    public XmlAdapterService(TransformEngine engine, boolean spliceOutput) {
+        this(engine, spliceOutput, !Boolean.getBoolean("xmlt.json.compact"));
+    }
+
+    /** @param prettyJson JSON indentado ({@code true}) o compacto, bastante más pequeño. */
+    public XmlAdapterService(TransformEngine engine, boolean spliceOutput, boolean prettyJson) {
+        this(engine, spliceOutput, prettyJson, RuleSet.configured());
+    }
+
+    /**
+     * @param rules reglas del motor DOM ({@link RuleSet#configured()} en los otros constructores).
+     * @throws IllegalArgumentException si son reglas propias y el motor no es DOM (STAX tiene las A–H fijas y XSLT
+     *                                  las de su hoja), o si la hoja del motor XSLT no compila.
+     */
+    public XmlAdapterService(TransformEngine engine, boolean spliceOutput, boolean prettyJson, RuleSet rules) {
+        if (engine != TransformEngine.DOM && !rules.isDefault()) {
+            throw new IllegalArgumentException("Las reglas propias (" + rules + ") sólo se aplican con el motor dom.");
+        }
+        this.engine = engine;
+        this.spliceOutput = spliceOutput;
+        this.prettyJson = prettyJson;
+        this.rules = rules;
+        this.xsltRewriter = engine == TransformEngine.XSLT ? XsltInvoiceRewriter.configured() : null;
+    }
+
+    public TransformEngine getEngine() { return engine; }
+
+    public RuleSet getRules() { return rules; }
+
+    /**
+     * Lo que identifica la salida en {@link ProcessingManifest}: {@link TransformEngine#version()}; con reglas u
+     * hoja XSLT propias, su hash; y las opciones que cambian los bytes escritos, {@code +splice} y
+     * {@code +compact} (p. ej. {@code DOM/2+rules:3fa2c1d0e4b5+splice}, {@code XSLT/2+xslt:9c04e1a27b3d+compact}).
+     */
+    public String engineVersion() {
+        StringBuilder v = new StringBuilder(engine.version());
+        if (!rules.isDefault()) v.append('+').append(rules.id());
+        if (xsltRewriter != null && !xsltRewriter.isDefault()) v.append('+').append(xsltRewriter.id());
+        if (spliceOutput) v.append("+splice");
+        if (!prettyJson) v.append("+compact");
+        return v.toString();
+    }
+
+    public boolean isPrettyJson() { return prettyJson; }
 
     // ------------------------------------------------------------------
     // XML Básico
     // ------------------------------------------------------------------
     @Override
     public Document readXml(String path) throws Exception {
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware(true);
-        DocumentBuilder db = dbf.newDocumentBuilder();
-        return db.parse(new File(path));
+        StageTimer timer = StageTimer.start();
+        Document doc = XmlPools.documentBuilder().parse(new File(path));
+        timer.stop(Stage.READ_XML, doc, Path.of(path));
+        return doc;
+    }
+
+    /** Para documentos que no vienen de disco (p. ej. el cuerpo de una petición HTTP). */
+    public Document readXml(InputStream in) throws Exception {
+        StageTimer timer = StageTimer.start();
+        Document doc = XmlPools.documentBuilder().parse(in);
+        timer.stop(Stage.READ_XML, doc, 0);
+        return doc;
     }
 
     @Override
     public void writeXml(Document doc, String path) throws Exception {
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer t = tf.newTransformer();
-        t.setOutputProperty(OutputKeys.INDENT, "yes");
-        t.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-        t.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-
-        t.transform(new DOMSource(doc),
-                new StreamResult(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8)));
+        StageTimer timer = StageTimer.start();
+        Transformer t = XmlPools.indentingTransformer();
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8)) {
+            t.transform(new DOMSource(doc), new StreamResult(out));
+        }
+        timer.stop(Stage.WRITE_XML, doc, Path.of(path));
 
         System.out.println("✅ Archivo XML modificado guardado correctamente: " + path);
     }
 
-    @Override
-    public void writeJson(Object data, String path) throws Exception {
-        var mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-        mapper.setSerializationInclusion(com.fasterxml.jackson.annotation.JsonInclude.Include.ALWAYS);
-        mapper.writerWithDefaultPrettyPrinter().writeValue(new File(path), data);
-        System.out.println("✅ JSON generado correctamente: " + path);
+    /** Igual que {@link #writeXml(Document, String)} pero sobre un stream (que no se cierra). */
+    public void writeXml(Document doc, OutputStream out) throws Exception {
+        StageTimer timer = StageTimer.start();
+        XmlPools.indentingTransformer().transform(new DOMSource(doc), new StreamResult(out));
+        timer.stop(Stage.WRITE_XML, doc, 0);
     }
 
-    // ------------------------------------------------------------------
-    // Helper para XPath con namespaces
-    // ------------------------------------------------------------------
-    private XPath newXPath() {
-        XPathFactory xpf = XPathFactory.newInstance();
-        XPath xp = xpf.newXPath();
-        xp.setNamespaceContext(new NamespaceContext() {
-            @Override
-            public String getNamespaceURI(String prefix) {
-                return NS.getOrDefault(prefix, XMLConstants.NULL_NS_URI);
-            }
-
-            @Override
-            public String getPrefix(String uri) {
-                return null;
-            }
+    /**
+     * Escribe el documento transformado a partir de {@code original}. En modo empalme conserva
+     * byte a byte todo lo que no sea el contenido embebido; si el archivo no lo admite, serializa el DOM.
+     */
+    public void writeXml(ParsedInvoice original, Document modified, String path) throws Exception {
+        StageTimer timer = StageTimer.start();
+        if (spliceOutput && SpliceXmlWriter.write(original, modified, Path.of(path))) {
+            timer.stop(Stage.WRITE_XML, null, Path.of(path));
+            System.out.println("✅ Archivo XML modificado guardado correctamente (empalme): " + path);
+            return;
+        }
+        writeXml(modified, path);
+    }
 
-            @Override
-            public Iterator<String> getPrefixes(String uri) {
-                return null;
-            }
-        });
-        return xp;
+    @Override
+    public void writeJson(Object data, String path) throws Exception {
+        StageTimer timer = StageTimer.start();
+        JsonWriters.writer(prettyJson).writeValue(new File(path), data);
+        timer.stop(Stage.WRITE_JSON, null, Path.of(path));
+        System.out.println("✅ JSON generado correctamente: " + path);
     }
 
     // ------------------------------------------------------------------
@@ -87,12 +148,28 @@ public class XmlAdapterService implements XmlAdapter {
     // ------------------------------------------------------------------
     @Override
     public void applyManualTransformations(Document outerDoc, String fechaSuministro) throws Exception {
-        XPath xp = newXPath();
+        transformDescriptions(outerDoc, fechaSuministro, null);
+    }
+
+    /**
+     * Igual que {@link #applyManualTransformations(Document, String)} pero sobre una copia del documento
+     * ya parseado: el motor DOM reutiliza los Invoice embebidos que {@code invoice} ya tiene en memoria.
+     *
+     * @return la copia transformada; el documento original de {@code invoice} no se modifica.
+     */
+    public Document applyManualTransformations(ParsedInvoice invoice, String fechaSuministro) throws Exception {
+        Document copy = invoice.mutableCopy();
+        transformDescriptions(copy, fechaSuministro, invoice);
+        return copy;
+    }
 
+    private void transformDescriptions(Document outerDoc, String fechaSuministro, ParsedInvoice parsed) throws Exception {
         // Buscar todos los <cbc:Description> que contengan XML embebido
-        NodeList descTexts = (NodeList) xp.evaluate("//cbc:Description/text()", outerDoc, XPathConstants.NODESET);
+        NodeList descTexts = XPathRegistry.nodes(outerDoc, ParsedInvoice.DESCRIPTION_TEXTS);
 
-        int processed = 0;
+        List<Node> targets = new ArrayList<>();
+        List<String> payloads = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
         for (int i = 0; i < descTexts.getLength(); i++) {
             Node textNode = descTexts.item(i);
             String content = textNode.getNodeValue();
@@ -101,142 +178,145 @@ public class XmlAdapterService implements XmlAdapter {
             String trimmed = content.trim();
             if (!trimmed.startsWith("<") || !trimmed.contains("<Invoice")) continue;
 
-            // Parsear el XML embebido
-            Document innerDoc = parseInnerXml(trimmed);
-
-            // Aplicar transformaciones del manual (A–E, G–H)
-            replaceGroupSchemeName(innerDoc);
-            removeUnnamespacedElements(innerDoc, "Id");
-            renameCodigoPrestador(innerDoc);
-            removeUnnamespacedElements(innerDoc, "TotalesCop");
-            replaceCustomizationId(innerDoc);
-            adjustValueElements(innerDoc);
-            truncateCodigoPrestador(innerDoc);
-            removeByQualifiedName(innerDoc, "cac:PrepaidPayment");
-
-            // ✅ Paso F: insertar <cac:InvoicePeriod> usando la fecha ingresada
-            insertInvoicePeriod(innerDoc, fechaSuministro);
-
-            // Reescribir el XML embebido modificado
-            String newContent = serializeXml(innerDoc);
-            newContent = newContent.replaceAll("\\n\\s*\\n", "\n").trim();
-
-            textNode.setNodeValue("\n" + newContent + "\n");
-            processed++;
+            targets.add(textNode);
+            payloads.add(trimmed);
+            indexes.add(i);
         }
 
-        System.out.println("✅ applyManualTransformations: XMLs internos procesados: " + processed);
-    }
+        boolean parallel = runsInParallel(payloads.size());
+        List<Document> preParsed = new ArrayList<>(payloads.size());
+        for (int i : indexes) {
+            // En paralelo sólo se reutiliza lo ya parseado: ParsedInvoice no es thread-safe y el resto se parsea en cada tarea
+            preParsed.add(parsed == null ? null : parallel ? parsed.cachedEmbeddedCopy(i) : parsed.embeddedCopy(i));
+        }
+        List<String> rewritten = rewriteAll(payloads, preParsed, fechaSuministro);
 
-    // ------------------------------------------------------------------
-    // Métodos de transformación
-    // ------------------------------------------------------------------
-    private void replaceGroupSchemeName(Document doc) throws Exception {
-        XPath xp = newXPath();
-        NodeList nodes = (NodeList) xp.evaluate("//*[local-name()='Group']", doc, XPathConstants.NODESET);
-        for (int i = 0; i < nodes.getLength(); i++) {
-            Element group = (Element) nodes.item(i);
-            if (!group.hasAttribute("schemeName"))
-                group.setAttribute("schemeName", "Sector Salud");
+        // Única escritura sobre el DOM externo, en el orden original
+        for (int k = 0; k < targets.size(); k++) {
+            targets.get(k).setNodeValue(rewritten.get(k));
         }
-    }
 
-    private void removeUnnamespacedElements(Document doc, String localName) throws Exception {
-        XPath xp = newXPath();
-        NodeList nodes = (NodeList) xp.evaluate("//*[local-name()='" + localName + "']", doc, XPathConstants.NODESET);
-        List<Node> toRemove = new ArrayList<>();
-        for (int i = 0; i < nodes.getLength(); i++) toRemove.add(nodes.item(i));
-        for (Node n : toRemove) n.getParentNode().removeChild(n);
+        System.out.println("✅ applyManualTransformations (" + engine + (parallel ? ", en paralelo" : "")
+                + "): XMLs internos procesados: " + targets.size());
     }
 
-    private void renameCodigoPrestador(Document doc) throws Exception {
-        XPath xp = newXPath();
-        NodeList names = (NodeList) xp.evaluate("//*[local-name()='Interoperabilidad']//*[local-name()='Name']", doc, XPathConstants.NODESET);
-        for (int i = 0; i < names.getLength(); i++) {
-            Node n = names.item(i);
-            String original = n.getTextContent().trim();
-            n.setTextContent(original.replaceAll("\\s+", "_").toUpperCase());
-        }
+    /** true si {@code payloads} Invoice embebidos se reescriben en {@link Workers#payloadPool()}. */
+    static boolean runsInParallel(int payloads) {
+        return payloads >= Workers.PAYLOAD_PARALLEL_THRESHOLD && Workers.PAYLOAD_THREADS > 1;
     }
 
-    private void replaceCustomizationId(Document doc) throws Exception {
-        XPath xp = newXPath();
-        NodeList ids = (NodeList) xp.evaluate("//cbc:CustomizationID", doc, XPathConstants.NODESET);
-        for (int i = 0; i < ids.getLength(); i++) {
-            Node n = ids.item(i);
-            if ("10".equals(n.getTextContent().trim()))
-                n.setTextContent("SS-SinAporte");
+    /**
+     * Reescribe varios Invoice embebidos y devuelve el resultado de cada uno en el mismo orden.
+     * Si {@link #runsInParallel} lo indica, cada payload (parseo → reglas → serialización) es una tarea
+     * independiente en {@link Workers#payloadPool()}; si no, se procesan uno tras otro en este hilo.
+     * Con varios fallos se lanza el del primer payload en orden, igual que en secuencial.
+     *
+     * @param preParsed copia ya parseada de cada payload (o null) para el motor DOM; misma longitud que {@code payloads}.
+     */
+    List<String> rewriteAll(List<String> payloads, List<Document> preParsed, String fechaSuministro) throws Exception {
+        int n = payloads.size();
+        List<String> out = new ArrayList<>(n);
+        if (!runsInParallel(n)) {
+            for (int i = 0; i < n; i++) out.add(rewriteEmbedded(payloads.get(i), preParsed.get(i), fechaSuministro));
+            return out;
         }
-    }
 
-    private void adjustValueElements(Document doc) throws Exception {
-        XPath xp = newXPath();
-        NodeList values = (NodeList) xp.evaluate("//*[local-name()='Value']", doc, XPathConstants.NODESET);
-        for (int i = 0; i < values.getLength(); i++) {
-            Element v = (Element) values.item(i);
-            String text = v.getTextContent().trim();
-            if (text.equalsIgnoreCase("Cobertura Póliza SOAT")) {
-                v.setAttribute("schemeID", "10");
-                v.setAttribute("schemeName", "salud_cobertuta.gc");
-            } else if (text.equalsIgnoreCase("Pago por evento")) {
-                v.setAttribute("schemeID", "04");
-                v.setAttribute("schemeName", "salud_modalidad_pago.gc");
-            }
+        String factura = StageEvent.currentFactura();
+        List<ForkJoinTask<String>> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String payload = payloads.get(i);
+            Document doc = preParsed.get(i);
+            tasks.add(Workers.payloadPool().submit(() -> {
+                StageEvent.setFactura(factura);
+                try {
+                    return rewriteEmbedded(payload, doc, fechaSuministro);
+                } finally {
+                    StageEvent.clearFactura();
+                }
+            }));
+        }
+        try {
+            for (ForkJoinTask<String> t : tasks) out.add(t.get());
+        } catch (ExecutionException e) {
+            for (ForkJoinTask<String> t : tasks) t.cancel(false);
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            if (cause instanceof Error err) throw err;
+            throw e;
+        } catch (InterruptedException e) {
+            for (ForkJoinTask<String> t : tasks) t.cancel(false);
+            throw e;
         }
+        return out;
     }
 
-    private void truncateCodigoPrestador(Document doc) throws Exception {
-        XPath xp = newXPath();
-        NodeList values = (NodeList) xp.evaluate("//*[local-name()='Value']", doc, XPathConstants.NODESET);
-        for (int i = 0; i < values.getLength(); i++) {
-            Element v = (Element) values.item(i);
-            if (v.getTextContent().matches("\\d{12,}")) {
-                String digits = v.getTextContent().substring(0, 10);
-                v.setTextContent(digits);
-            }
+    /**
+     * Reescribe un Invoice embebido (texto ya recortado) con el motor configurado.
+     *
+     * @param preParsed copia ya parseada del mismo texto para los motores DOM y XSLT, o null para parsearlo aquí.
+     * @return el XML resultante con un salto de línea al inicio y al final, tal como va en {@code cbc:Description}.
+     */
+    String rewriteEmbedded(String trimmed, Document preParsed, String fechaSuministro) throws Exception {
+        if (engine == TransformEngine.STAX) {
+            StageTimer timer = StageTimer.start();
+            String out = staxRewriter.rewrite(stripXmlDeclaration(trimmed), fechaSuministro);
+            timer.stop(Stage.STAX_REWRITE, out);
+            return out;
         }
+        // XSLT no distingue CDATA de texto y la escribiría escapada; con la hoja incluida (las mismas reglas que
+        // el motor DOM por defecto) esos Invoice pasan por DOM y la salida sigue siendo la misma
+        if (engine == TransformEngine.XSLT && !(xsltRewriter.isDefault() && trimmed.contains("<![CDATA["))) {
+            StageTimer timer = StageTimer.start();
+            Document result = xsltRewriter.rewrite(preParsed != null
+                    ? new DOMSource(preParsed)
+                    : new StreamSource(new StringReader(stripXmlDeclaration(trimmed))), fechaSuministro);
+            timer.lap(Stage.XSLT_TRANSFORM, result);
+            String out = InnerXmlWriter.write(result);
+            timer.stop(Stage.SERIALIZE, out);
+            return out;
+        }
+        Document innerDoc = preParsed != null ? preParsed : parseInnerXml(trimmed);
+        return transformInnerDom(innerDoc, fechaSuministro);
     }
 
-    private void removeByQualifiedName(Document doc, String qName) throws Exception {
-        String[] parts = qName.split(":");
-        if (parts.length != 2) return;
-        String ns = NS.get(parts[0]);
-        String local = parts[1];
-        NodeList nodes = doc.getElementsByTagNameNS(ns, local);
-        List<Node> toRemove = new ArrayList<>();
-        for (int i = 0; i < nodes.getLength(); i++)
-            toRemove.add(nodes.item(i));
-        for (Node n : toRemove)
-            n.getParentNode().removeChild(n);
+    /** Motor DOM: aplica las reglas ({@link RuleSet}) + paso F sobre el Invoice embebido ya parseado y lo vuelve a serializar. */
+    private String transformInnerDom(Document innerDoc, String fechaSuministro) throws Exception {
+        // Reglas del manual (A–E, G–H): un solo recorrido del DOM
+        StageTimer timer = StageTimer.start();
+        rules.apply(innerDoc);
+        timer.lap(Stage.RULES, innerDoc);
+
+        // ✅ Paso F: insertar <cac:InvoicePeriod> usando la fecha ingresada
+        insertInvoicePeriod(innerDoc, fechaSuministro);
+        timer.lap(Stage.STEP_F, innerDoc);
+
+        // Reescribir el XML embebido modificado: una pasada, sin líneas en blanco ni copias intermedias
+        String newContent = InnerXmlWriter.write(innerDoc);
+        timer.stop(Stage.SERIALIZE, newContent);
+        return newContent;
     }
 
+    // ------------------------------------------------------------------
+    // Métodos de transformación
+    // ------------------------------------------------------------------
     // ✅ Inserta el bloque dinámico <cac:InvoicePeriod>
-    private void insertInvoicePeriod(Document doc, String fechaSuministro) throws Exception {
+    void insertInvoicePeriod(Document doc, String fechaSuministro) throws Exception {
         if (fechaSuministro == null || fechaSuministro.isBlank()) return;
 
-        XPath xp = newXPath();
-        Node node = (Node) xp.evaluate("(//cbc:UBLVersionID)[1]", doc, XPathConstants.NODE);
+        Node node = XPathRegistry.node(doc, "(//cbc:UBLVersionID)[1]");
         if (node == null) return;
 
         Element parent = (Element) node.getParentNode();
         Element invoicePeriod = doc.createElementNS(NS.get("cac"), "cac:InvoicePeriod");
 
-        SimpleDateFormat sdfInput = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(sdfInput.parse(fechaSuministro));
-
-        // StartDate = día anterior
-        cal.add(Calendar.DATE, -1);
-        String startDate = new SimpleDateFormat("yyyy-MM-dd").format(cal.getTime());
-
-        // EndDate = mismo día del suministro
-        cal.add(Calendar.DATE, 1);
-        String endDate = fechaSuministro.substring(0, 10);
+        InvoicePeriod period = InvoicePeriod.from(fechaSuministro);
+        String startDate = period.startDate;
+        String endDate = period.endDate;
 
         addChild(doc, invoicePeriod, "cbc:StartDate", startDate);
-        addChild(doc, invoicePeriod, "cbc:StartTime", "00:00:00-05:00");
+        addChild(doc, invoicePeriod, "cbc:StartTime", InvoicePeriod.TIME);
         addChild(doc, invoicePeriod, "cbc:EndDate", endDate);
-        addChild(doc, invoicePeriod, "cbc:EndTime", "00:00:00-05:00");
+        addChild(doc, invoicePeriod, "cbc:EndTime", InvoicePeriod.TIME);
 
         Node next = node.getNextSibling();
         while (next != null && next.getNodeType() == Node.TEXT_NODE && next.getTextContent().trim().isEmpty()) {
@@ -259,22 +339,23 @@ public class XmlAdapterService implements XmlAdapter {
     // ------------------------------------------------------------------
     // Utilidades XML
     // ------------------------------------------------------------------
-    private Document parseInnerXml(String xmlContent) throws Exception {
-        String cleaned = xmlContent.replaceFirst("<\\?xml.*?\\?>", "").trim();
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.parse(new ByteArrayInputStream(cleaned.getBytes(StandardCharsets.UTF_8)));
+    Document parseInnerXml(String xmlContent) throws Exception {
+        StageTimer timer = StageTimer.start();
+        String cleaned = stripXmlDeclaration(xmlContent);
+        byte[] bytes = cleaned.getBytes(StandardCharsets.UTF_8);
+        Document doc = XmlPools.documentBuilder().parse(new ByteArrayInputStream(bytes));
+        timer.stop(Stage.EXTRACT_EMBEDDED, doc, bytes.length);
+        return doc;
     }
 
-    private String serializeXml(Document doc) throws Exception {
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+    static String stripXmlDeclaration(String xmlContent) {
+        return xmlContent.replaceFirst("<\\?xml.*?\\?>", "").trim();
+    }
 
+    /** Serialización genérica con el {@code Transformer}; el Invoice embebido usa {@link InnerXmlWriter}. */
+    String serializeXml(Document doc) throws Exception {
         StringWriter writer = new StringWriter();
-        transformer.transform(new DOMSource(doc), new StreamResult(writer));
+        XmlPools.indentingTransformer().transform(new DOMSource(doc), new StreamResult(writer));
         return writer.toString();
     }
 
@@ -282,8 +363,7 @@ public class XmlAdapterService implements XmlAdapter {
     // Extraer XML embebido
     // ------------------------------------------------------------------
     public Document extractEmbeddedXml(Document doc) throws Exception {
-        XPath xp = newXPath();
-        NodeList descTexts = (NodeList) xp.evaluate("//cbc:Description/text()", doc, XPathConstants.NODESET);
+        NodeList descTexts = XPathRegistry.nodes(doc, ParsedInvoice.DESCRIPTION_TEXTS);
         for (int i = 0; i < descTexts.getLength(); i++) {
             String cdata = descTexts.item(i).getNodeValue().trim();
             if (cdata.startsWith("<")) {
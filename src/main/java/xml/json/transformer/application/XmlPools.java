@@ -0,0 +1,104 @@
+package xml.json.transformer.application;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+/**
+ * Parsers y serializadores XML configurados una sola vez y reutilizados por hilo.
+ * <p>
+ * {@code DocumentBuilderFactory.newInstance()} / {@code TransformerFactory.newInstance()} hacen
+ * búsquedas de service-loader en cada llamada; aquí las factorías se crean una vez (namespace-aware,
+ * secure-processing, sin acceso a DTD/esquemas externos) y cada hilo conserva su propio
+ * {@link DocumentBuilder} y {@link Transformer}, que no son thread-safe.
+ */
+public final class XmlPools {
+
+    private static final DocumentBuilderFactory DBF = newDocumentBuilderFactory();
+    private static final TransformerFactory TF = newTransformerFactory();
+    private static final XMLInputFactory STAX_IN = newStaxInputFactory();
+
+    private static final ThreadLocal<DocumentBuilder> BUILDER = ThreadLocal.withInitial(() -> {
+        try {
+            synchronized (DBF) { return DBF.newDocumentBuilder(); }
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("No se pudo crear el DocumentBuilder", e);
+        }
+    });
+
+    private static final ThreadLocal<Transformer> INDENTING = ThreadLocal.withInitial(() -> {
+        try {
+            Transformer t;
+            synchronized (TF) { t = TF.newTransformer(); }
+            t.setOutputProperty(OutputKeys.INDENT, "yes");
+            t.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+            t.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            return t;
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException("No se pudo crear el Transformer", e);
+        }
+    });
+
+    private XmlPools() {}
+
+    /** DocumentBuilder del hilo actual, reiniciado a la configuración de la factoría. */
+    public static DocumentBuilder documentBuilder() {
+        DocumentBuilder db = BUILDER.get();
+        db.reset();
+        return db;
+    }
+
+    /** Transformer identidad del hilo actual con indentación de 2 espacios y UTF-8. */
+    public static Transformer indentingTransformer() {
+        return INDENTING.get();
+    }
+
+    /** Hoja XSLT compilada con la factoría configurada; el {@link Templates} sí es thread-safe. */
+    public static Templates templates(Source stylesheet) throws TransformerConfigurationException {
+        synchronized (TF) { return TF.newTemplates(stylesheet); }
+    }
+
+    /** La factoría StAX es thread-safe una vez configurada. */
+    public static XMLInputFactory staxInputFactory() { return STAX_IN; }
+
+    // ------------------------------------------------------------------
+    // Configuración
+    // ------------------------------------------------------------------
+    private static DocumentBuilderFactory newDocumentBuilderFactory() {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        try {
+            dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (ParserConfigurationException ignore) { /* no soportado por la implementación */ }
+        dbf.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        dbf.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        return dbf;
+    }
+
+    private static TransformerFactory newTransformerFactory() {
+        TransformerFactory tf = TransformerFactory.newInstance();
+        try {
+            tf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (TransformerConfigurationException ignore) { /* no soportado por la implementación */ }
+        tf.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        tf.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        return tf;
+    }
+
+    private static XMLInputFactory newStaxInputFactory() {
+        XMLInputFactory f = XMLInputFactory.newFactory();
+        f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        f.setProperty(XMLInputFactory.IS_COALESCING, false);
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return f;
+    }
+}
@@ -0,0 +1,125 @@
+package xml.json.transformer.application;
+
+import org.w3c.dom.Document;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Motor XSLT: aplica las reglas A–H y el paso F sobre el Invoice embebido con una hoja de estilo, para quien
+ * prefiere mantener las reglas en XSLT.
+ * <p>
+ * La hoja se compila UNA vez por JVM a {@link Templates} (thread-safe); cada hilo saca de ahí su propio
+ * {@link Transformer}, que es barato y se reutiliza. {@code fechaSuministro} llega como parámetro de la hoja
+ * para el bloque {@code cac:InvoicePeriod}. El resultado es un DOM que se serializa con {@link InnerXmlWriter},
+ * igual que en el motor DOM: con la hoja incluida la salida es la misma byte a byte ({@code dev.EngineDiff}).
+ * <p>
+ * Límite: el modelo de datos de XSLT no distingue CDATA de texto, así que una sección CDATA sale como texto
+ * escapado ({@code <![CDATA[<a>]]>} → {@code &lt;a&gt;}). Con la hoja incluida {@link XmlAdapterService} manda
+ * esos Invoice al motor DOM; con una hoja propia no hay equivalente y la diferencia queda.
+ * <p>
+ * Hoja incluida: {@code /xslt/invoice-rules.xsl}; otra con {@code -Dxmlt.xslt=<archivo>}. La factoría es la de
+ * {@link XmlPools} (procesamiento seguro): la hoja no puede importar otras ni usar funciones de extensión.
+ */
+final class XsltInvoiceRewriter {
+
+    static final String DEFAULT_RESOURCE = "/xslt/invoice-rules.xsl";
+
+    private static volatile XsltInvoiceRewriter configured;
+
+    private final String id;
+    private final Templates templates;
+    private final ThreadLocal<Transformer> transformer;
+
+    private XsltInvoiceRewriter(String id, Source stylesheet) throws TransformerConfigurationException {
+        this.id = id;
+        this.templates = XmlPools.templates(stylesheet);
+        this.transformer = ThreadLocal.withInitial(() -> {
+            try {
+                return templates.newTransformer();
+            } catch (TransformerConfigurationException e) {
+                throw new IllegalStateException("No se pudo crear el Transformer XSLT", e);
+            }
+        });
+    }
+
+    /**
+     * {@code -Dxmlt.xslt=<archivo>} si se indicó, si no la hoja incluida. Se compila una vez.
+     *
+     * @throws IllegalArgumentException si la hoja no se puede leer o no compila.
+     */
+    static XsltInvoiceRewriter configured() {
+        XsltInvoiceRewriter r = configured;
+        if (r == null) {
+            synchronized (XsltInvoiceRewriter.class) {
+                if ((r = configured) == null) {
+                    String file = System.getProperty("xmlt.xslt");
+                    configured = r = file == null || file.isBlank() ? bundled() : load(Path.of(file.trim()));
+                }
+            }
+        }
+        return r;
+    }
+
+    private static XsltInvoiceRewriter bundled() {
+        try (InputStream in = XsltInvoiceRewriter.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) throw new IllegalStateException("Recurso no encontrado: " + DEFAULT_RESOURCE);
+            return compile("default", in.readAllBytes(), DEFAULT_RESOURCE);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer la hoja XSLT incluida", e);
+        }
+    }
+
+    /** @throws IllegalArgumentException si la hoja no se puede leer o no compila. */
+    static XsltInvoiceRewriter load(Path file) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("No se pudo leer la hoja XSLT " + file + ": " + e.getMessage(), e);
+        }
+        return compile("xslt:" + ProcessingManifest.sha256Prefix(bytes), bytes, file.toUri().toString());
+    }
+
+    private static XsltInvoiceRewriter compile(String id, byte[] xsl, String systemId) {
+        try {
+            return new XsltInvoiceRewriter(id, new StreamSource(new ByteArrayInputStream(xsl), systemId));
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalArgumentException("La hoja XSLT " + systemId + " no compila: " + e.getMessageAndLocation(), e);
+        }
+    }
+
+    /** {@code default} para la hoja incluida; {@code xslt:<hash>} para un archivo (cambia con su contenido). */
+    String id() { return id; }
+
+    boolean isDefault() { return "default".equals(id); }
+
+    /**
+     * Transforma el Invoice embebido.
+     *
+     * @param source el Invoice como texto ({@code StreamSource}) o ya parseado ({@code DOMSource}).
+     */
+    Document rewrite(Source source, String fechaSuministro) throws Exception {
+        String fecha = fechaSuministro == null ? "" : fechaSuministro.trim();
+        if (!fecha.isEmpty()) InvoicePeriod.from(fecha); // misma validación (y mismo error) que los otros motores
+
+        Transformer t = transformer.get();
+        t.setParameter("fechaSuministro", fecha);
+        try {
+            DOMResult result = new DOMResult();
+            t.transform(source, result);
+            return (Document) result.getNode();
+        } finally {
+            t.clearParameters();
+        }
+    }
+}
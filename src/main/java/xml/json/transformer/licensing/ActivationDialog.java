@@ -21,7 +21,7 @@ public class ActivationDialog extends JDialog {
 
         // recoger huella
         this.comps = FingerprintServiceWin.collect();
-        this.deviceId = FingerprintServiceWin.computeDeviceId(comps);
+        this.deviceId = FingerprintServiceWin.deviceId();
 
         JTextArea ta = new JTextArea(
                 "Huella del equipo (deviceId):\n" + deviceId +
@@ -77,6 +77,7 @@ public class ActivationDialog extends JDialog {
 
         try {
             LicenseStorage.saveEncrypted(lf);
+            LicenseState.accept(lf);
             activated = true;
             JOptionPane.showMessageDialog(this, "Licencia activada correctamente.");
             dispose();
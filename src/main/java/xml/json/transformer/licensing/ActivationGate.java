@@ -1,36 +1,60 @@
 package xml.json.transformer.licensing;
 
 import javax.swing.*;
-import static xml.json.transformer.licensing.FingerprintServiceWin.*;
 
 public class ActivationGate {
 
-    /** Devuelve true si la app puede continuar. */
+    /**
+     * Devuelve true si la app puede continuar. Con la licencia ya verificada en este proceso es sólo una lectura
+     * de {@link LicenseState}; si no, la verifica y, si hace falta, abre el diálogo de activación.
+     */
     public static boolean ensureActivated(JFrame appOwner) {
+        if (LicenseState.isValid()) return true;
+        String err;
         try {
-            var saved = LicenseStorage.loadEncryptedOrNull();
-            var comps = FingerprintServiceWin.collect();
-            var localDeviceId = FingerprintServiceWin.computeDeviceId(comps);
-            var verifier = new LicenseVerifier();
-
-            if (saved != null) {
-                String err = verifier.verify(saved, localDeviceId);
-                if (err == null) return true;
-                JOptionPane.showMessageDialog(appOwner,
-                        "La licencia guardada no es válida: " + err + "\n" +
-                                "Por favor, importe una licencia válida.", "Licencia", JOptionPane.WARNING_MESSAGE);
-            }
-
-            ActivationDialog dlg = new ActivationDialog(appOwner);
-            dlg.setVisible(true);
-            return dlg.isActivated();
-
+            err = LicenseState.refresh();
         } catch (Exception ex) {
+            return ensureActivated(appOwner, null, ex);
+        }
+        return ensureActivated(appOwner, err, null);
+    }
+
+    /**
+     * Igual que {@link #ensureActivated(JFrame)}, pero con el resultado de una verificación que ya corrió (la del
+     * arranque, fuera del EDT): no vuelve a leer ni a verificar la licencia.
+     *
+     * @param err     lo que devolvió {@link LicenseState#refresh()} (null si es válida).
+     * @param failure la excepción si {@code refresh()} falló; entonces {@code err} se ignora.
+     */
+    public static boolean ensureActivated(JFrame appOwner, String err, Throwable failure) {
+        if (failure != null) {
             JOptionPane.showMessageDialog(appOwner,
-                    "No se pudo validar la licencia: " + ex.getMessage(),
+                    "No se pudo validar la licencia: " + failure.getMessage(),
                     "Licencia", JOptionPane.ERROR_MESSAGE);
             return false;
         }
+        if (err == null) return true;
+        if (!LicenseState.NO_LICENSE.equals(err)) {
+            JOptionPane.showMessageDialog(appOwner,
+                    "La licencia guardada no es válida: " + err + "\n" +
+                            "Por favor, importe una licencia válida.", "Licencia", JOptionPane.WARNING_MESSAGE);
+        }
+
+        ActivationDialog dlg = new ActivationDialog(appOwner);
+        dlg.setVisible(true);
+        return dlg.isActivated();
     }
 
+    /** Variante sin diálogos (modo batch): true si la licencia guardada es válida para este equipo. */
+    public static boolean isActivatedHeadless() {
+        if (LicenseState.isValid()) return true;
+        try {
+            String err = LicenseState.refresh();
+            if (err != null && !LicenseState.NO_LICENSE.equals(err)) System.err.println("⚠️ Licencia: " + err);
+            return err == null;
+        } catch (Exception ex) {
+            System.err.println("⚠️ No se pudo validar la licencia: " + ex.getMessage());
+            return false;
+        }
+    }
 }
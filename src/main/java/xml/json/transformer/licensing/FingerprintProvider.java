@@ -0,0 +1,22 @@
+package xml.json.transformer.licensing;
+
+import static xml.json.transformer.licensing.FingerprintServiceWin.Components;
+
+/**
+ * Origen de los componentes de hardware que forman la huella del equipo.
+ * <p>
+ * Las implementaciones se descubren con {@link java.util.ServiceLoader}
+ * ({@code META-INF/services/xml.json.transformer.licensing.FingerprintProvider}); {@link FingerprintServiceWin}
+ * elige, entre las que soportan este sistema, la indicada en {@code -Dxmlt.fingerprint=<nombre>} o la primera.
+ */
+public interface FingerprintProvider {
+
+    /** Nombre para {@code -Dxmlt.fingerprint}. */
+    String name();
+
+    /** true si puede usarse en esta JVM/sistema; las que devuelven false no se eligen ni pidiéndolas por nombre. */
+    boolean isSupported();
+
+    /** Lee los componentes; los que no se puedan obtener quedan vacíos. No lanza excepciones. */
+    Components collect();
+}
@@ -1,59 +1,66 @@
 package xml.json.transformer.licensing;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.*;
-import java.util.stream.Collectors;
 
-/** Obtiene señales estables de hardware en Windows y calcula un deviceId. */
+/**
+ * Obtiene señales estables de hardware y calcula un deviceId. La lectura depende del sistema
+ * ({@link FingerprintProvider}); el nombre de la clase viene de cuando sólo existía la versión Windows.
+ */
 public class FingerprintServiceWin {
 
     // Cambia este salt por uno tuyo, fijo, no público
     private static final String SALT = "XMLT-2A7F9C6B-const-salt";
 
     public static final class Components {
-        public final String uuid;        // Win32_ComputerSystemProduct.UUID
+        public final String uuid;        // Win32_ComputerSystemProduct.UUID; en Linux, machine-id
         public final String baseBoard;   // Win32_BaseBoard.SerialNumber
         public final String bios;        // Win32_BIOS.SerialNumber
         public final String disk;        // Win32_DiskDrive.SerialNumber (primer disco físico)
         public Components(String uuid, String baseBoard, String bios, String disk) {
             this.uuid = n(uuid); this.baseBoard = n(baseBoard); this.bios = n(bios); this.disk = n(disk);
         }
-        private String n(String s) { return s == null ? "" : s.trim().toUpperCase(Locale.ROOT); }
+        private static String n(String s) { return s == null ? "" : s.trim().toUpperCase(Locale.ROOT); }
         public List<String> list(){ return List.of(uuid, baseBoard, bios, disk); }
     }
 
-    /** Ejecuta un comando PowerShell y devuelve la primera línea limpia. */
-    private static String ps(String cmd) {
-        try {
-            Process p = new ProcessBuilder("powershell", "-NoProfile", "-ExecutionPolicy", "Bypass",
-                    "-Command", cmd).redirectErrorStream(true).start();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
-                String out = br.lines().collect(Collectors.joining("\n")).trim();
-                p.waitFor();
-                // nos quedamos con la primera línea no vacía
-                for (String line : out.split("\\R")) {
-                    String s = line.trim();
-                    if (!s.isEmpty()) return s;
-                }
-                return "";
-            }
-        } catch (Exception e) { return ""; }
+    /**
+     * Componentes de este equipo. Se leen una sola vez por JVM con el {@link FingerprintProvider} elegido
+     * (el primero que soporte el sistema; {@code -Dxmlt.fingerprint=<nombre>} elige entre los soportados); las llamadas
+     * siguientes devuelven la misma instancia.
+     */
+    public static Components collect() {
+        return Local.COMPONENTS;
     }
 
-    public static Components collect() {
-        String uuid  = ps("(Get-CimInstance Win32_ComputerSystemProduct).UUID");
-        String bb    = ps("(Get-CimInstance Win32_BaseBoard).SerialNumber");
-        String bios  = ps("(Get-CimInstance Win32_BIOS).SerialNumber");
-        // primer disco con serial
-        String disk  = ps("(Get-CimInstance Win32_PhysicalMedia | Where-Object {$_.SerialNumber -ne $null} | Select-Object -First 1 -ExpandProperty SerialNumber)");
-        if (disk.isEmpty()) {
-            // fallback por si PhysicalMedia no trae serial
-            disk = ps("(Get-CimInstance Win32_DiskDrive | Select-Object -First 1 -ExpandProperty SerialNumber)");
+    /** {@link #computeDeviceId} de {@link #collect()}, calculado una sola vez. */
+    public static String deviceId() {
+        return Local.DEVICE_ID;
+    }
+
+    private static final class Local {
+        static final Components COMPONENTS = select().collect();
+        static final String DEVICE_ID = computeDeviceId(COMPONENTS);
+    }
+
+    /**
+     * {@code xmlt.fingerprint} sólo elige entre los proveedores que soportan este sistema: forzar otro (p. ej.
+     * {@code linux} en Windows) daría componentes vacíos, el mismo deviceId en todos los equipos y una licencia
+     * válida para cualquiera.
+     */
+    static FingerprintProvider select() {
+        String wanted = System.getProperty("xmlt.fingerprint");
+        FingerprintProvider first = null;
+        for (FingerprintProvider p : ServiceLoader.load(FingerprintProvider.class, FingerprintServiceWin.class.getClassLoader())) {
+            if (!p.isSupported()) continue;
+            if (wanted == null || p.name().equalsIgnoreCase(wanted.trim())) return p;
+            if (first == null) first = p;
         }
-        return new Components(uuid, bb, bios, disk);
+        if (wanted != null) System.err.println("⚠️ Proveedor de huella no disponible en este sistema: " + wanted);
+        if (first != null) return first;
+        // Sin proveedor para este sistema: como antes, se intenta PowerShell y los componentes quedan vacíos
+        return new WindowsFingerprintProvider();
     }
 
     /** DeviceId = SHA256( SALT + comp1|comp2|comp3|comp4 ) en HEX. */
@@ -75,10 +82,7 @@ public class FingerprintServiceWin {
     private static String sha256Hex(String s) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] d = md.digest(s.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(d.length*2);
-            for (byte b : d) sb.append(String.format("%02x", b));
-            return sb.toString();
+            return HexFormat.of().formatHex(md.digest(s.getBytes(StandardCharsets.UTF_8)));
         } catch (Exception e) { return ""; }
     }
 }
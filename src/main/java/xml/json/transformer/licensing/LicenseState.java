@@ -0,0 +1,120 @@
+package xml.json.transformer.licensing;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static xml.json.transformer.licensing.LicenseModels.LicenseFile;
+
+/**
+ * Estado de la licencia de este proceso, ya verificado.
+ * <p>
+ * Leer {@code license.bin} (DPAPI), obtener la huella y verificar la firma RSA se hace en {@link #refresh()};
+ * el resultado queda en una instantánea inmutable con su vencimiento (fin del día {@code exp} de la licencia).
+ * {@link #isValid()} sólo lee esa instantánea ({@code volatile}) y compara con el reloj, así que puede
+ * llamarse en cada clic desde el EDT.
+ * <p>
+ * Mientras la licencia es válida, un hilo daemon la vuelve a verificar cada
+ * {@code -Dxmlt.license.revalidate.minutes} (60 por defecto; 0 lo desactiva) por si el archivo cambió o se borró.
+ */
+public final class LicenseState {
+
+    private static final long REVALIDATE_MINUTES = Long.getLong("xmlt.license.revalidate.minutes", 60);
+
+    /** Resultado de una verificación. {@code error == null} si fue válida. */
+    private static final class Snapshot {
+        final String error;
+        final long validUntilMillis;
+
+        Snapshot(String error, long validUntilMillis) {
+            this.error = error;
+            this.validUntilMillis = validUntilMillis;
+        }
+    }
+
+    /** Motivo de {@link #refresh()} cuando no hay {@code license.bin}. */
+    static final String NO_LICENSE = "No hay licencia instalada.";
+
+    private static final Snapshot UNVERIFIED = new Snapshot("Licencia no verificada.", 0);
+
+    private static volatile Snapshot current = UNVERIFIED;
+    private static ScheduledExecutorService revalidator;
+    private static boolean scheduled;
+
+    private LicenseState() {}
+
+    /** true si la última verificación fue válida y la licencia aún no vence. No hace E/S. */
+    public static boolean isValid() {
+        Snapshot s = current;
+        return s.error == null && System.currentTimeMillis() < s.validUntilMillis;
+    }
+
+    /** Motivo por el que {@link #isValid()} es false (o null si es válida). */
+    public static String error() {
+        Snapshot s = current;
+        if (s.error != null) return s.error;
+        return System.currentTimeMillis() < s.validUntilMillis ? null : "Licencia expirada.";
+    }
+
+    /**
+     * Verifica la licencia guardada contra la huella del equipo y actualiza el estado.
+     *
+     * @return null si es válida; si no, el motivo.
+     */
+    public static String refresh() {
+        LicenseFile saved = LicenseStorage.loadEncryptedOrNull();
+        if (saved == null) {
+            current = new Snapshot(NO_LICENSE, 0);
+            return NO_LICENSE;
+        }
+        return accept(saved);
+    }
+
+    /**
+     * Verifica {@code lf} (p. ej. recién importada) y, si es válida, la deja como estado actual sin volver a
+     * leer el disco.
+     *
+     * @return null si es válida; si no, el motivo.
+     */
+    public static String accept(LicenseFile lf) {
+        String err = new LicenseVerifier().verify(lf, FingerprintServiceWin.deviceId());
+        current = err == null ? new Snapshot(null, validUntil(lf.payload.exp)) : new Snapshot(err, 0);
+        if (err == null) scheduleRevalidation();
+        return err;
+    }
+
+    /** La licencia vale hasta el final del día {@code exp} ({@link LicenseModels#isExpired}); sin exp, siempre. */
+    private static long validUntil(String exp) {
+        if (exp == null || exp.isBlank()) return Long.MAX_VALUE;
+        return LocalDate.parse(exp.trim()).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static void refreshQuietly() {
+        try {
+            String err = refresh();
+            if (err != null) System.err.println("⚠️ Licencia: " + err);
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ No se pudo revalidar la licencia: " + e.getMessage());
+        }
+    }
+
+    private static synchronized void scheduleRevalidation() {
+        if (scheduled || REVALIDATE_MINUTES <= 0) return;
+        scheduled = true;
+        executor().scheduleWithFixedDelay(LicenseState::refreshQuietly,
+                REVALIDATE_MINUTES, REVALIDATE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private static synchronized ScheduledExecutorService executor() {
+        if (revalidator == null) {
+            revalidator = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "xmlt-license");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return revalidator;
+    }
+}
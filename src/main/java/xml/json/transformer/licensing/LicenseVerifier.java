@@ -26,14 +26,13 @@ public class LicenseVerifier {
                     VwIDAQAB
                     -----END PUBLIC KEY-----""";
 
-    private final ObjectMapper om = new ObjectMapper();
+    /** Se parsea una sola vez por proceso. */
+    private static final PublicKey PUBLIC_KEY = loadPublicKey(PUBLIC_KEY_PEM);
+
     private final PublicKey publicKey;
 
     public LicenseVerifier() {
-        this.publicKey = loadPublicKey(PUBLIC_KEY_PEM);
-        String fp = java.util.Base64.getEncoder().encodeToString(this.publicKey.getEncoded())
-                .substring(0, 24);
-        System.out.println("[DEBUG] PublicKey FP: " + fp);
+        this.publicKey = PUBLIC_KEY;
     }
 
     public static PublicKey loadPublicKey(String pem) {
@@ -0,0 +1,64 @@
+package xml.json.transformer.licensing;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import static xml.json.transformer.licensing.FingerprintServiceWin.Components;
+
+/**
+ * Linux: lee {@code /sys/class/dmi/id} y el machine-id sin lanzar procesos.
+ * <p>
+ * Sólo usa fuentes legibles por cualquier usuario: {@code product_uuid}, {@code board_serial} y
+ * {@code product_serial} son de root, y leerlos haría que el deviceId cambie según quién ejecute
+ * (la licencia compara el deviceId exacto).
+ * <ul>
+ *   <li>uuid ← {@code /etc/machine-id} (o {@code /var/lib/dbus/machine-id}): único por instalación.</li>
+ *   <li>baseBoard ← {@code board_vendor board_name}, bios ← {@code sys_vendor product_name}: el modelo, no
+ *       el serial, pero atan la huella al hardware.</li>
+ *   <li>disk queda vacío: no hay serial de disco legible sin privilegios.</li>
+ * </ul>
+ */
+public class LinuxFingerprintProvider implements FingerprintProvider {
+
+    private static final Path DMI = Path.of("/sys/class/dmi/id");
+
+    @Override
+    public String name() { return "linux"; }
+
+    @Override
+    public boolean isSupported() {
+        return System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("linux");
+    }
+
+    @Override
+    public Components collect() {
+        String machineId = read(Path.of("/etc/machine-id"));
+        if (machineId.isEmpty()) machineId = read(Path.of("/var/lib/dbus/machine-id"));
+        return new Components(
+                machineId,
+                dmi("board_vendor", "board_name"),
+                dmi("sys_vendor", "product_name"),
+                "");
+    }
+
+    private static String dmi(String... names) {
+        StringBuilder sb = new StringBuilder();
+        for (String n : names) {
+            String v = read(DMI.resolve(n));
+            if (v.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(v);
+        }
+        return sb.toString();
+    }
+
+    private static String read(Path p) {
+        try {
+            return Files.readString(p, StandardCharsets.US_ASCII).trim();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package xml.json.transformer.licensing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static xml.json.transformer.licensing.FingerprintServiceWin.Components;
+
+/**
+ * Windows: las cuatro propiedades WMI en UNA sola invocación de PowerShell (antes era un proceso por propiedad).
+ * El script imprime {@code CLAVE=valor} por línea.
+ */
+public class WindowsFingerprintProvider implements FingerprintProvider {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private static final String SCRIPT = String.join("; ",
+            "$p = Get-CimInstance Win32_ComputerSystemProduct",
+            "$b = @(Get-CimInstance Win32_BaseBoard)",
+            "$s = @(Get-CimInstance Win32_BIOS)",
+            // primer disco con serial; si PhysicalMedia no trae ninguno, el primer DiskDrive
+            "$d = Get-CimInstance Win32_PhysicalMedia | Where-Object {$_.SerialNumber -ne $null} | Select-Object -First 1 -ExpandProperty SerialNumber",
+            "if (-not $d) { $d = Get-CimInstance Win32_DiskDrive | Select-Object -First 1 -ExpandProperty SerialNumber }",
+            "'UUID=' + @($p)[0].UUID",
+            "'BASEBOARD=' + $b[0].SerialNumber",
+            "'BIOS=' + $s[0].SerialNumber",
+            "'DISK=' + $d");
+
+    @Override
+    public String name() { return "windows"; }
+
+    @Override
+    public boolean isSupported() {
+        return System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+    }
+
+    @Override
+    public Components collect() {
+        Map<String, String> v = run();
+        return new Components(v.get("UUID"), v.get("BASEBOARD"), v.get("BIOS"), v.get("DISK"));
+    }
+
+    /**
+     * Ejecuta el script con un límite de {@link #TIMEOUT_SECONDS}: la salida se lee en otro hilo para que un
+     * PowerShell/WMI colgado no bloquee para siempre (y con él a todo el que espera {@code deviceId()}).
+     * Si no termina a tiempo se mata el proceso y los componentes quedan vacíos.
+     */
+    private static Map<String, String> run() {
+        Map<String, String> values = new HashMap<>();
+        try {
+            Process p = new ProcessBuilder("powershell", "-NoProfile", "-NonInteractive", "-ExecutionPolicy", "Bypass",
+                    "-Command", SCRIPT).redirectErrorStream(true).start();
+            p.getOutputStream().close();
+            Thread reader = new Thread(() -> read(p, values), "xmlt-fingerprint-wmi");
+            reader.setDaemon(true);
+            reader.start();
+            if (!p.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+                System.err.println("⚠️ PowerShell no respondió en " + TIMEOUT_SECONDS + " s; huella sin componentes WMI.");
+                return new HashMap<>();
+            }
+            // El proceso terminó: sólo queda vaciar el pipe
+            reader.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+            if (reader.isAlive()) return new HashMap<>();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new HashMap<>();
+        } catch (Exception e) {
+            // sin PowerShell: componentes vacíos, igual que antes
+        }
+        return values;
+    }
+
+    private static void read(Process p, Map<String, String> values) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line; (line = br.readLine()) != null; ) {
+                int eq = line.indexOf('=');
+                if (eq <= 0) continue;
+                // nos quedamos con la primera aparición de cada clave
+                values.putIfAbsent(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+        } catch (IOException e) {
+            // proceso destruido por el límite de tiempo: run() ya devolvió componentes vacíos
+        }
+    }
+}
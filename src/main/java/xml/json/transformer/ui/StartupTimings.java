@@ -0,0 +1,75 @@
+package xml.json.transformer.ui;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Hitos del arranque de la interfaz, en ms desde que arrancó el proceso (o desde {@code main} si el sistema no
+ * informa el inicio del proceso).
+ * <ul>
+ *   <li>{@link #interactive()}: el botón "Iniciar" quedó habilitado → imprime el reporte de arranque.</li>
+ *   <li>{@link #firstResult()}: terminó el primer archivo → imprime el reporte con ese hito.</li>
+ * </ul>
+ * Con {@code -Dxmlt.startup.log=<archivo>} cada reporte se agrega además como una línea TSV
+ * ({@code fecha  hito=ms ...}), para comparar entre versiones.
+ */
+public final class StartupTimings {
+
+    private static final long ORIGIN_MILLIS = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElseGet(System::currentTimeMillis);
+
+    private static final Map<String, Long> MARKS = new LinkedHashMap<>();
+    private static boolean interactiveReported;
+    private static boolean firstResultReported;
+
+    private StartupTimings() {}
+
+    /** Registra {@code name} con el tiempo actual; sólo cuenta la primera vez. Thread-safe. */
+    public static synchronized void mark(String name) {
+        MARKS.putIfAbsent(name, System.currentTimeMillis() - ORIGIN_MILLIS);
+    }
+
+    /** Hito "interactivo" y reporte de arranque (una sola vez). */
+    public static synchronized void interactive() {
+        mark("interactivo");
+        if (interactiveReported) return;
+        interactiveReported = true;
+        report("⏱️ Arranque");
+    }
+
+    /** Hito "primer resultado" y reporte (una sola vez). */
+    public static synchronized void firstResult() {
+        mark("primer_resultado");
+        if (firstResultReported) return;
+        firstResultReported = true;
+        report("⏱️ Primer resultado");
+    }
+
+    private static void report(String title) {
+        StringJoiner line = new StringJoiner(", ", title + ": ", "");
+        StringJoiner tsv = new StringJoiner("\t");
+        tsv.add(Instant.now().toString());
+        MARKS.forEach((name, ms) -> {
+            line.add(name + " " + ms + " ms");
+            tsv.add(name + "=" + ms);
+        });
+        System.out.println(line);
+
+        String log = System.getProperty("xmlt.startup.log");
+        if (log == null || log.isBlank()) return;
+        try {
+            Files.writeString(Path.of(log), tsv + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo escribir " + log + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<!--
+  Reglas A-H y paso F del manual sobre el Invoice embebido, para el motor XSLT (TransformEngine.XSLT).
+  Mismo resultado que el motor DOM (default-rules.json + insertInvoicePeriod); se compila una vez por JVM.
+  Salvo CDATA: XSLT no la distingue del texto y la escribiría escapada, así que los Invoice con CDATA no llegan
+  a esta hoja (XmlAdapterService los pasa por el motor DOM). Una hoja propia sí los recibe.
+
+  Parámetro: fechaSuministro (yyyy-MM-dd HH:mm). Vacío: no se inserta InvoicePeriod.
+
+  XSLT 1.0 (el procesador del JDK): las mayúsculas de la regla C y la comparación sin mayúsculas de E2
+  cubren ASCII y Latin-1, que es lo que traen los documentos.
+-->
+<xsl:stylesheet version="1.0"
+                xmlns:xsl="http://www.w3.org/1999/XSL/Transform"
+                xmlns:cac="urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2"
+                xmlns:cbc="urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2"
+                exclude-result-prefixes="cac cbc">
+
+    <xsl:param name="fechaSuministro" select="''"/>
+
+    <xsl:variable name="lower" select="'abcdefghijklmnopqrstuvwxyzàáâãäåæçèéêëìíîïðñòóôõöøùúûüýþ'"/>
+    <xsl:variable name="upper" select="'ABCDEFGHIJKLMNOPQRSTUVWXYZÀÁÂÃÄÅÆÇÈÉÊËÌÍÎÏÐÑÒÓÔÕÖØÙÚÛÜÝÞ'"/>
+    <xsl:variable name="time" select="'00:00:00-05:00'"/>
+    <!-- Ancla de F: el primer cbc:UBLVersionID que sobrevive a B, D y H, como en el árbol ya transformado del motor DOM -->
+    <xsl:variable name="firstUblVersion" select="generate-id((//cbc:UBLVersionID[not(ancestor::*[local-name()='Id'
+            or local-name()='TotalesCop' or self::cac:PrepaidPayment])])[1])"/>
+
+    <!-- Identidad: todo lo que ninguna regla toca se copia igual -->
+    <xsl:template match="@*|node()">
+        <xsl:copy>
+            <xsl:apply-templates select="@*|node()"/>
+        </xsl:copy>
+    </xsl:template>
+
+    <!-- A: schemeName de Group -->
+    <xsl:template match="*[local-name()='Group'][not(@schemeName)]">
+        <xsl:copy>
+            <xsl:apply-templates select="@*"/>
+            <xsl:attribute name="schemeName">Sector Salud</xsl:attribute>
+            <xsl:apply-templates select="node()"/>
+        </xsl:copy>
+    </xsl:template>
+
+    <!-- B, D, H: eliminar Id, TotalesCop y cac:PrepaidPayment con su contenido -->
+    <xsl:template match="*[local-name()='Id'] | *[local-name()='TotalesCop'] | cac:PrepaidPayment"/>
+
+    <!-- C: nombres de Interoperabilidad, espacios a "_" y mayúsculas -->
+    <xsl:template match="*[local-name()='Interoperabilidad']//*[local-name()='Name']">
+        <xsl:copy>
+            <xsl:apply-templates select="@*"/>
+            <xsl:value-of select="translate(translate(normalize-space(.), ' ', '_'), $lower, $upper)"/>
+        </xsl:copy>
+    </xsl:template>
+
+    <!-- E1: CustomizationID 10 -->
+    <xsl:template match="cbc:CustomizationID[normalize-space(.) = '10']">
+        <xsl:copy>
+            <xsl:apply-templates select="@*"/>
+            <xsl:text>SS-SinAporte</xsl:text>
+        </xsl:copy>
+    </xsl:template>
+
+    <!-- E2: schemeID/schemeName de Value (texto recortado, sin distinguir mayúsculas). XSLT 1.0 no admite
+         variables en los patrones: las letras van escritas como en $lower/$upper -->
+    <xsl:template match="*[local-name()='Value'][translate(normalize-space(.), 'abcdefghijklmnopqrstuvwxyzàáâãäåæçèéêëìíîïðñòóôõöøùúûüýþ', 'ABCDEFGHIJKLMNOPQRSTUVWXYZÀÁÂÃÄÅÆÇÈÉÊËÌÍÎÏÐÑÒÓÔÕÖØÙÚÛÜÝÞ') = 'COBERTURA PÓLIZA SOAT'
+                                                 and contains(translate(., 'abcdefghijklmnopqrstuvwxyzàáâãäåæçèéêëìíîïðñòóôõöøùúûüýþ', 'ABCDEFGHIJKLMNOPQRSTUVWXYZÀÁÂÃÄÅÆÇÈÉÊËÌÍÎÏÐÑÒÓÔÕÖØÙÚÛÜÝÞ'), 'COBERTURA PÓLIZA SOAT')]">
+        <xsl:call-template name="value-scheme">
+            <xsl:with-param name="id" select="'10'"/>
+            <xsl:with-param name="name" select="'salud_cobertuta.gc'"/>
+        </xsl:call-template>
+    </xsl:template>
+
+    <xsl:template match="*[local-name()='Value'][translate(normalize-space(.), 'abcdefghijklmnopqrstuvwxyzàáâãäåæçèéêëìíîïðñòóôõöøùúûüýþ', 'ABCDEFGHIJKLMNOPQRSTUVWXYZÀÁÂÃÄÅÆÇÈÉÊËÌÍÎÏÐÑÒÓÔÕÖØÙÚÛÜÝÞ') = 'PAGO POR EVENTO'
+                                                 and contains(translate(., 'abcdefghijklmnopqrstuvwxyzàáâãäåæçèéêëìíîïðñòóôõöøùúûüýþ', 'ABCDEFGHIJKLMNOPQRSTUVWXYZÀÁÂÃÄÅÆÇÈÉÊËÌÍÎÏÐÑÒÓÔÕÖØÙÚÛÜÝÞ'), 'PAGO POR EVENTO')]">
+        <xsl:call-template name="value-scheme">
+            <xsl:with-param name="id" select="'04'"/>
+            <xsl:with-param name="name" select="'salud_modalidad_pago.gc'"/>
+        </xsl:call-template>
+    </xsl:template>
+
+    <xsl:template name="value-scheme">
+        <xsl:param name="id"/>
+        <xsl:param name="name"/>
+        <xsl:copy>
+            <xsl:apply-templates select="@*"/>
+            <xsl:attribute name="schemeID"><xsl:value-of select="$id"/></xsl:attribute>
+            <xsl:attribute name="schemeName"><xsl:value-of select="$name"/></xsl:attribute>
+            <xsl:apply-templates select="node()"/>
+        </xsl:copy>
+    </xsl:template>
+
+    <!-- G: Value de 12 o más dígitos (sin recortar) queda en los primeros 10 -->
+    <xsl:template match="*[local-name()='Value'][string-length(.) &gt;= 12 and translate(., '0123456789', '') = '']">
+        <xsl:copy>
+            <xsl:apply-templates select="@*"/>
+            <xsl:value-of select="substring(., 1, 10)"/>
+        </xsl:copy>
+    </xsl:template>
+
+    <!-- F: InvoicePeriod justo después del primer cbc:UBLVersionID -->
+    <xsl:template match="cbc:UBLVersionID">
+        <xsl:copy>
+            <xsl:apply-templates select="@*|node()"/>
+        </xsl:copy>
+        <xsl:if test="generate-id(.) = $firstUblVersion and normalize-space($fechaSuministro) != ''">
+            <cac:InvoicePeriod>
+                <cbc:StartDate>
+                    <xsl:call-template name="previous-day">
+                        <xsl:with-param name="date" select="substring($fechaSuministro, 1, 10)"/>
+                    </xsl:call-template>
+                </cbc:StartDate>
+                <cbc:StartTime><xsl:value-of select="$time"/></cbc:StartTime>
+                <cbc:EndDate><xsl:value-of select="substring($fechaSuministro, 1, 10)"/></cbc:EndDate>
+                <cbc:EndTime><xsl:value-of select="$time"/></cbc:EndTime>
+            </cac:InvoicePeriod>
+        </xsl:if>
+    </xsl:template>
+
+    <!-- yyyy-MM-dd del día anterior (calendario gregoriano) -->
+    <xsl:template name="previous-day">
+        <xsl:param name="date"/>
+        <xsl:variable name="y" select="number(substring($date, 1, 4))"/>
+        <xsl:variable name="m" select="number(substring($date, 6, 2))"/>
+        <xsl:variable name="d" select="number(substring($date, 9, 2))"/>
+        <xsl:choose>
+            <xsl:when test="$d &gt; 1">
+                <xsl:value-of select="concat(substring($date, 1, 8), format-number($d - 1, '00'))"/>
+            </xsl:when>
+            <xsl:when test="$m = 1">
+                <xsl:value-of select="concat(format-number($y - 1, '0000'), '-12-31')"/>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:variable name="leap" select="($y mod 4 = 0 and $y mod 100 != 0) or $y mod 400 = 0"/>
+                <xsl:variable name="last">
+                    <xsl:choose>
+                        <xsl:when test="$m - 1 = 2 and $leap">29</xsl:when>
+                        <xsl:when test="$m - 1 = 2">28</xsl:when>
+                        <xsl:when test="$m - 1 = 4 or $m - 1 = 6 or $m - 1 = 9 or $m - 1 = 11">30</xsl:when>
+                        <xsl:otherwise>31</xsl:otherwise>
+                    </xsl:choose>
+                </xsl:variable>
+                <xsl:value-of select="concat(substring($date, 1, 5), format-number($m - 1, '00'), '-', $last)"/>
+            </xsl:otherwise>
+        </xsl:choose>
+    </xsl:template>
+</xsl:stylesheet>
@@ -0,0 +1,39 @@
+package xml.json.transformer.licensing;
+
+import static xml.json.transformer.licensing.FingerprintServiceWin.Components;
+
+/**
+ * Doble de prueba: componentes fijos, sin tocar el hardware. Vive sólo en el classpath de test (no entra
+ * en el jar, que si no permitiría hacerse pasar por otro equipo); ahí se elige con
+ * {@code -Dxmlt.fingerprint=fixed} (sólo entonces se declara soportado) y los valores salen de
+ * {@code -Dxmlt.fingerprint.fixed=uuid|placa|bios|disco}.
+ */
+public class FixedFingerprintProvider implements FingerprintProvider {
+
+    private static final String DEFAULT = "TEST-UUID|TEST-BASEBOARD|TEST-BIOS|TEST-DISK";
+
+    private final Components components;
+
+    /** Para {@link java.util.ServiceLoader}: toma los valores de {@code xmlt.fingerprint.fixed}. */
+    public FixedFingerprintProvider() {
+        this(parse(System.getProperty("xmlt.fingerprint.fixed", DEFAULT)));
+    }
+
+    public FixedFingerprintProvider(Components components) {
+        this.components = components;
+    }
+
+    private static Components parse(String spec) {
+        String[] p = spec.split("\\|", -1);
+        return new Components(p[0], p.length > 1 ? p[1] : "", p.length > 2 ? p[2] : "", p.length > 3 ? p[3] : "");
+    }
+
+    @Override
+    public String name() { return "fixed"; }
+
+    @Override
+    public boolean isSupported() { return name().equalsIgnoreCase(System.getProperty("xmlt.fingerprint", "").trim()); }
+
+    @Override
+    public Components collect() { return components; }
+}